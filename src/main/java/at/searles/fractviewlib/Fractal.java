@@ -1,8 +1,11 @@
 package at.searles.fractviewlib;
 
 
+import at.searles.fractviewlib.color.PaletteBuffer;
 import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.data.FractalHistory;
 import at.searles.fractviewlib.data.ParameterType;
+import at.searles.fractviewlib.data.ParameterValues;
 import at.searles.commons.math.Scale;
 import at.searles.commons.color.Palette;
 import at.searles.meelan.MeelanException;
@@ -52,8 +55,7 @@ public class Fractal {
      */
     private FractalData data;
 
-    private int historyIndex; // position of data in historylist.
-    private final ArrayList<FractalData> history;
+    private final FractalHistory history;
 
     /**
      * Palettes in order
@@ -68,6 +70,11 @@ public class Fractal {
      */
     private List<String> paletteIds;
 
+    /**
+     * Interpolation tables of all palettes. Created on demand.
+     */
+    private PaletteBuffer paletteBuffer;
+
     private List<Scale> scales; // updated during compilation
     private TreeMap<String, Integer> scaleIndices; // fixme not used currently
 
@@ -90,6 +97,8 @@ public class Fractal {
 
     private final List<Listener> listeners;
 
+    private Change lastChange;
+
     public static Fractal fromData(FractalData data) throws MeelanException {
         Fractal fractal = new Fractal(data, true);
 
@@ -115,9 +124,7 @@ public class Fractal {
 
         this.listeners = new LinkedList<>();
 
-        this.historyIndex = 0;
-        this.history = new ArrayList<>();
-        this.history.add(data);
+        this.history = new FractalHistory(data);
 
         // Find scales and palettes from externs.
         // We might store more than necessary, but it
@@ -136,10 +143,62 @@ public class Fractal {
         return listeners.remove(l);
     }
 
-    private void notifyFractalModified() {
+    private void notifyFractalModified(Change change) {
+        this.lastChange = change;
+
         for(Listener l : listeners) {
-            l.fractalModified(this);
+            l.fractalModified(this, change);
+        }
+    }
+
+    /**
+     * The change of the last modification. Used by FractalProvider
+     * to collect the changes of all its fractals.
+     */
+    Change lastChange() {
+        return lastChange;
+    }
+
+    /**
+     * Compares the current state with the given old state.
+     */
+    private Change createChange(CompiledState oldState) {
+        Map<String, Parameter> oldEntries = oldState.entries;
+        int[] oldCode = oldState.code;
+        List<Palette> oldPalettes = oldState.palettes;
+
+        Map<String, Object> oldValues = new LinkedHashMap<>();
+        Map<String, Object> newValues = new LinkedHashMap<>();
+
+        for(Map.Entry<String, Parameter> oldEntry : oldEntries.entrySet()) {
+            Parameter newParameter = entries.get(oldEntry.getKey());
+            Object oldValue = oldEntry.getValue().value;
+
+            if(newParameter == null) {
+                oldValues.put(oldEntry.getKey(), oldValue);
+            } else if(!ParameterValues.equals(oldValue, newParameter.value)) {
+                oldValues.put(oldEntry.getKey(), oldValue);
+                newValues.put(oldEntry.getKey(), newParameter.value);
+            }
         }
+
+        for(Map.Entry<String, Parameter> newEntry : entries.entrySet()) {
+            if(!oldEntries.containsKey(newEntry.getKey())) {
+                newValues.put(newEntry.getKey(), newEntry.getValue().value);
+            }
+        }
+
+        boolean codeChanged = oldCode != code && !Arrays.equals(oldCode, code);
+
+        boolean palettesChanged = oldPalettes.size() != palettes.size();
+
+        for(int i = 0; !palettesChanged && i < palettes.size(); ++i) {
+            palettesChanged = !ParameterValues.equals(oldPalettes.get(i), palettes.get(i));
+        }
+
+        boolean scaleChanged = oldValues.containsKey(SCALE_LABEL) || newValues.containsKey(SCALE_LABEL);
+
+        return new Change(oldValues, newValues, codeChanged, palettesChanged, scaleChanged);
     }
 
     // === Compilation and Structure Types ===
@@ -197,21 +256,27 @@ public class Fractal {
         this.code = asmCode.createIntCode();
 
         // update palette list.
-        palettes.clear();
+        List<Palette> newPalettes = new ArrayList<>(paletteIds.size());
 
         for(String paletteId : paletteIds) {
             Parameter parameter = getParameter(paletteId);
 
             if(parameter != null) {
-                palettes.add((Palette) parameter.value);
+                newPalettes.add((Palette) parameter.value);
             } else {
                 // add a tiny dummy.
-                palettes.add(new Palette(1, 1, new int[]{0}));
+                newPalettes.add(new Palette(1, 1, new int[]{0}));
             }
         }
 
+        palettes = newPalettes;
+        paletteBuffer = null;
+
         // and update scale
+        entries.put(SCALE_LABEL, createScaleEntry());
+    }
 
+    private Parameter createScaleEntry() {
         // FIXME scales should work like palettes.
 
         Scale customScale = (Scale) data.getValue(SCALE_LABEL);
@@ -219,14 +284,14 @@ public class Fractal {
         // XXX Ideally, here would be an approach similar to palette.
 
         if(customScale != null) {
-            entries.put(SCALE_LABEL, new Parameter(
+            return new Parameter(
                     SCALE_LABEL,
                     SCALE_DESCRIPTION,
                     customScale,
                     null, // not needed because it is not implemented
                     ParameterType.Scale,
                     false
-            ));
+            );
         } else {
             // either default or declared.
             Scale scale;
@@ -238,14 +303,14 @@ public class Fractal {
                 scale = DEFAULT_SCALE;
             }
 
-            entries.put(SCALE_LABEL, new Parameter(
+            return new Parameter(
                     SCALE_LABEL,
                     SCALE_DESCRIPTION,
                     scale,
                     null, // not needed because it is not implemented
                     ParameterType.Scale,
                     true
-            ));
+            );
         }
     }
 
@@ -261,6 +326,18 @@ public class Fractal {
         return palettes;
     }
 
+    /**
+     * Precomputed Lab interpolation tables of all palettes in the
+     * same order as in palettes().
+     */
+    public PaletteBuffer paletteBuffer() {
+        if(paletteBuffer == null) {
+            paletteBuffer = PaletteBuffer.get(palettes);
+        }
+
+        return paletteBuffer;
+    }
+
     public List<Scale> scales() {
         return scales;
     }
@@ -289,10 +366,13 @@ public class Fractal {
         }
 
         if(key.equals(SOURCE_LABEL)) {
-            setData(this.data.copySetSource((String) value), true, false);
+            setData(this.data.copySetSource((String) value));
+        } else if(current.type == ParameterType.Palette) {
+            FractalData newData = value != null ? data.copySetParameter(key, value) : data.copyResetParameter(key);
+            setPaletteData(newData, key);
         } else {
             FractalData newData = value != null ? data.copySetParameter(key, value) : data.copyResetParameter(key);
-            setData(newData, true, false);
+            setData(newData);
         }
 
         return true; // something changed.
@@ -310,8 +390,12 @@ public class Fractal {
         return data.source();
     }
 
-    void setData(FractalData data, boolean storeInHistory, boolean isRollback) {
+    void setData(FractalData data) {
         FractalData oldData = this.data;
+
+        // nothing is modified in place, hence this is just a snapshot.
+        CompiledState oldState = new CompiledState(this);
+
         this.data = data;
 
         try {
@@ -319,54 +403,259 @@ public class Fractal {
             compile();
         } catch (MeelanException ex) {
             // roll back (it was already successful).
-            setData(oldData, false, true);
+            this.data = oldData;
+            oldState.restore(this);
             throw ex; // rethrow.
         }
 
-        // success on compiling. If requested, store in history.
-        if(storeInHistory) {
-            history.add(++historyIndex, this.data);
+        // success on compiling. Store in history together
+        // with the old compiled state for undo.
+        history.attach(oldState);
+        history.add(this.data);
+
+        notifyFractalModified(createChange(oldState));
+    }
+
+    /**
+     * Palettes are only referenced by their index in the code, hence
+     * if only a palette is modified, there is no need to recompile.
+     * Only the palette entry and the list of palettes are updated.
+     */
+    private void setPaletteData(FractalData data, String paletteId) {
+        FractalData oldData = this.data;
+        CompiledState oldState = new CompiledState(this);
+
+        this.data = data;
+
+        try {
+            updatePaletteEntry(paletteId);
+        } catch (MeelanException ex) {
+            this.data = oldData;
+            throw ex;
+        }
+
+        history.attach(oldState);
+        history.add(this.data);
+
+        notifyFractalModified(createChange(oldState));
+    }
+
+    /**
+     * Copy on write: Lists that were returned before (eg by palettes())
+     * might still be in use by a renderer, hence they are not modified.
+     */
+    private void updatePaletteEntry(String paletteId) {
+        Parameter parameter = resolver.fromDecl(data.externDecls().get(paletteId));
+
+        LinkedHashMap<String, Parameter> newEntries = new LinkedHashMap<>(entries);
+        newEntries.put(paletteId, parameter);
+
+        List<Palette> newPalettes = new ArrayList<>(palettes);
+        newPalettes.set(paletteIds.indexOf(paletteId), (Palette) parameter.value);
+
+        entries = newEntries;
+        palettes = newPalettes;
+        paletteBuffer = null;
+    }
+
+    /**
+     * Creates a new fractal in which the parameter key is set to value
+     * (or reset if value is null). Palettes and the scale are not part of the
+     * code, hence for them the compiled code is shared and there is no
+     * recompilation. Listeners and history are not copied.
+     */
+    public Fractal derive(String key, Object value) throws MeelanException {
+        Parameter current = entries.get(key);
+
+        if(current == null || (value != null && !current.type.isInstance(value))) {
+            throw new IllegalArgumentException("cannot set " + key);
         }
 
-        if(history.get(historyIndex) != this.data) {
-            // FIXME remove after verification
-            throw new IllegalArgumentException();
+        if(key.equals(SOURCE_LABEL)) {
+            Fractal fractal = new Fractal(data.copySetSource((String) value), resolver.allowInlined);
+            fractal.compile();
+            return fractal;
         }
 
-        if(!isRollback) {
-            // should not be called if there was a compiler error.
-            notifyFractalModified();
+        FractalData newData = value != null ? data.copySetParameter(key, value) : data.copyResetParameter(key);
+
+        Fractal fractal = new Fractal(newData, resolver.allowInlined);
+
+        if(current.type == ParameterType.Palette || current.type == ParameterType.Scale) {
+            // shared because they are not modified in place.
+            fractal.code = code;
+            fractal.entries = entries;
+            fractal.palettes = palettes;
+
+            if(current.type == ParameterType.Palette) {
+                fractal.updatePaletteEntry(key);
+            } else {
+                LinkedHashMap<String, Parameter> newEntries = new LinkedHashMap<>(entries);
+                newEntries.put(SCALE_LABEL, fractal.createScaleEntry());
+                fractal.entries = newEntries;
+            }
+        } else {
+            fractal.compile();
         }
+
+        return fractal;
     }
 
     // === Handle History ===
 
-    boolean historyForward() {
-        if(historyIndex >= history.size() - 1) {
-            return false;
-        }
+    /**
+     * Limits the number of undo steps and the estimated memory
+     * used by the history. Oldest entries are evicted first.
+     */
+    public void setHistoryBudget(int maxSteps, long maxBytes) {
+        history.setBudget(maxSteps, maxBytes);
+    }
 
-        FractalData newData = history.get(++historyIndex);
-        setData(newData, false, false);
+    /**
+     * Limits the estimated memory used for compiled states of history
+     * entries. These are used to undo/redo without recompiling.
+     */
+    public void setCompiledCacheBudget(long maxBytes) {
+        history.setAttachmentBudget(maxBytes);
+    }
 
-        return true;
+    boolean historyForward() {
+        return historyStep(true);
     }
 
     boolean historyBack() {
-        if(historyIndex <= 0) {
+        return historyStep(false);
+    }
+
+    private boolean historyStep(boolean forward) {
+        if(forward ? !history.canGoForward() : !history.canGoBack()) {
             return false;
         }
 
-        FractalData newData = history.get(--historyIndex);
-        setData(newData, false, false);
+        // keep the compiled state for the way back.
+        CompiledState oldState = new CompiledState(this);
+        history.attach(oldState);
+
+        this.data = forward ? history.forward() : history.back();
+
+        CompiledState state = (CompiledState) history.attachment();
+
+        if(state != null) {
+            state.restore(this);
+        } else {
+            // it was compiled before, hence this should not fail.
+            initStructureTypes();
+            compile();
+        }
+
+        notifyFractalModified(createChange(oldState));
 
         return true;
     }
 
     // === Internal data structures ===
 
+    /**
+     * Everything that is created by initStructureTypes and compile.
+     * None of these are modified in place, hence they can be shared.
+     * It does not reference the FractalData, hence attaching it to
+     * the history does not keep the Ast alive.
+     */
+    private static class CompiledState implements FractalHistory.Attachment {
+        private static final int ENTRY_OVERHEAD = 64;
+
+        final int[] code;
+        final List<Palette> palettes;
+        final List<String> paletteIds;
+        final PaletteBuffer paletteBuffer;
+        final List<Scale> scales;
+        final TreeMap<String, Integer> scaleIndices;
+        final LinkedHashMap<String, Parameter> entries;
+        final long bytes;
+
+        CompiledState(Fractal fractal) {
+            this.code = fractal.code;
+            this.palettes = fractal.palettes;
+            this.paletteIds = fractal.paletteIds;
+            this.paletteBuffer = fractal.paletteBuffer;
+            this.scales = fractal.scales;
+            this.scaleIndices = fractal.scaleIndices;
+            this.entries = fractal.entries;
+
+            // The palette buffer is interned and therefore not counted. The
+            // source entry contains the full source code.
+            String source = (String) entries.get(SOURCE_LABEL).value;
+
+            this.bytes = 4L * code.length
+                    + 2L * source.length()
+                    + (long) ENTRY_OVERHEAD * (entries.size() + palettes.size());
+        }
+
+        @Override
+        public long bytes() {
+            return bytes;
+        }
+
+        void restore(Fractal fractal) {
+            fractal.code = code;
+            fractal.palettes = palettes;
+            fractal.paletteIds = paletteIds;
+            fractal.paletteBuffer = paletteBuffer;
+            fractal.scales = scales;
+            fractal.scaleIndices = scaleIndices;
+            fractal.entries = entries;
+        }
+    }
+
     public interface Listener {
         void fractalModified(Fractal fractal);
+
+        /**
+         * Called after a modification with a description of what changed,
+         * eg to avoid rendering again if only the palettes changed.
+         */
+        default void fractalModified(Fractal fractal, Change change) {
+            fractalModified(fractal);
+        }
+    }
+
+    /**
+     * Describes a modification of a fractal. Values are the values of the
+     * parameter entries, including default values. If a parameter is not
+     * used after the modification, it is missing in newValues, if it was
+     * not used before, it is missing in oldValues.
+     */
+    public static class Change {
+        public final Map<String, Object> oldValues;
+        public final Map<String, Object> newValues;
+        public final boolean codeChanged;
+        public final boolean palettesChanged;
+        public final boolean scaleChanged;
+
+        private Change(Map<String, Object> oldValues, Map<String, Object> newValues, boolean codeChanged, boolean palettesChanged, boolean scaleChanged) {
+            this.oldValues = Collections.unmodifiableMap(oldValues);
+            this.newValues = Collections.unmodifiableMap(newValues);
+            this.codeChanged = codeChanged;
+            this.palettesChanged = palettesChanged;
+            this.scaleChanged = scaleChanged;
+        }
+
+        /**
+         * @return keys of all parameters that were modified, added or removed.
+         */
+        public Set<String> changedKeys() {
+            Set<String> keys = new LinkedHashSet<>(oldValues.keySet());
+            keys.addAll(newValues.keySet());
+            return keys;
+        }
+
+        /**
+         * False if the rendered image is not affected, eg if only
+         * comments in the source code were modified.
+         */
+        public boolean affectsImage() {
+            return codeChanged || palettesChanged || scaleChanged;
+        }
     }
 
     public static class Parameter {
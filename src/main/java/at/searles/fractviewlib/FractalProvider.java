@@ -2,9 +2,7 @@ package at.searles.fractviewlib;
 
 import at.searles.fractviewlib.data.FractalData;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.TreeSet;
+import java.util.*;
 
 /**
  * There is one source file for a fractal provider. It is compiled and that way,
@@ -38,9 +36,9 @@ public class FractalProvider {
 
     // === Handle parameters ===
 
-    private void fireParametersUpdated() {
+    private void fireParametersUpdated(Change change) {
         for(Listener l : listeners) {
-            l.parameterMapUpdated(this);
+            l.parameterMapUpdated(this, change);
         }
     }
 
@@ -55,19 +53,23 @@ public class FractalProvider {
      * If the parameter is non-exclusive, id is ignored.
      */
     public void setParameterValue(String key, int id, Object value) {
-        boolean updated = false;
+        Map<Integer, Fractal.Change> modified = new LinkedHashMap<>();
 
         if(exclusiveParameters.contains(key)) {
-            updated = setIndividualParameterValue(key, id, value);
+            if(setIndividualParameterValue(key, id, value)) {
+                modified.put(id, collection.get(id).lastChange());
+            }
         } else {
             // for all ids
             for(Integer i : collection.ids()) {
-                updated |= setIndividualParameterValue(key, i, value);
+                if(setIndividualParameterValue(key, i, value)) {
+                    modified.put(i, collection.get(i).lastChange());
+                }
             }
         }
 
-        if(updated) {
-            fireParametersUpdated();
+        if(!modified.isEmpty()) {
+            fireParametersUpdated(Change.modified(modified));
         }
     }
 
@@ -83,7 +85,7 @@ public class FractalProvider {
         Fractal fractal = Fractal.fromData(fractalData);
         int id = collection.add(fractal);
 
-        fireParametersUpdated();
+        fireParametersUpdated(Change.added(id));
 
         return id;
     }
@@ -98,7 +100,7 @@ public class FractalProvider {
             throw new IllegalArgumentException();
         }
         
-        fireParametersUpdated();
+        fireParametersUpdated(Change.removed(id));
     }
 
     // === Getters ===
@@ -127,7 +129,7 @@ public class FractalProvider {
 
     public boolean historyForward(int id) {
         if(getFractal(id).historyForward()) {
-            fireParametersUpdated();
+            fireParametersUpdated(Change.modified(id, getFractal(id).lastChange()));
             return true;
         }
 
@@ -136,7 +138,7 @@ public class FractalProvider {
 
     public boolean historyBack(int id) {
         if(getFractal(id).historyBack()) {
-            fireParametersUpdated();
+            fireParametersUpdated(Change.modified(id, getFractal(id).lastChange()));
             return true;
         }
 
@@ -149,8 +151,8 @@ public class FractalProvider {
      * Sets the data of the current fractal.
      */
     public void setFractal(int id, FractalData data) {
-        collection.get(id).setData(data, true, false);
-        fireParametersUpdated();
+        collection.get(id).setData(data);
+        fireParametersUpdated(Change.modified(id, getFractal(id).lastChange()));
     }
 
     // === Handle exclusive parameters ===
@@ -161,13 +163,13 @@ public class FractalProvider {
 
     public void removeExclusiveParameter(String id) {
         if(exclusiveParameters.remove(id)) {
-            fireParametersUpdated();
+            fireParametersUpdated(Change.exclusiveParameter(id));
         }
     }
 
     public void addExclusiveParameter(String id) {
         if(exclusiveParameters.add(id)) {
-            fireParametersUpdated();
+            fireParametersUpdated(Change.exclusiveParameter(id));
         }
     }
 
@@ -192,5 +194,71 @@ public class FractalProvider {
          * To redraw a modified fractal, rather use FractalListener
          */
         void parameterMapUpdated(FractalProvider src);
+
+        /**
+         * Called with a description of what changed. Renderers should
+         * rather use this method to skip work for unaffected fractals.
+         */
+        default void parameterMapUpdated(FractalProvider src, Change change) {
+            parameterMapUpdated(src);
+        }
+    }
+
+    /**
+     * Describes a modification of the provider. Fractals are addressed by their ids.
+     */
+    public static class Change {
+        /**
+         * Changes of all fractals that were modified.
+         */
+        public final Map<Integer, Fractal.Change> modifiedFractals;
+        public final Set<Integer> addedFractals;
+
+        /**
+         * Eg to cancel pending work for these fractals.
+         */
+        public final Set<Integer> removedFractals;
+
+        /**
+         * Parameters that were made exclusive or shared.
+         */
+        public final Set<String> exclusivityChanged;
+
+        private Change(Map<Integer, Fractal.Change> modifiedFractals, Set<Integer> addedFractals, Set<Integer> removedFractals, Set<String> exclusivityChanged) {
+            this.modifiedFractals = Collections.unmodifiableMap(modifiedFractals);
+            this.addedFractals = Collections.unmodifiableSet(addedFractals);
+            this.removedFractals = Collections.unmodifiableSet(removedFractals);
+            this.exclusivityChanged = Collections.unmodifiableSet(exclusivityChanged);
+        }
+
+        private static Change modified(Map<Integer, Fractal.Change> modifiedFractals) {
+            return new Change(modifiedFractals, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        }
+
+        private static Change modified(int id, Fractal.Change change) {
+            return modified(Collections.singletonMap(id, change));
+        }
+
+        private static Change added(int id) {
+            return new Change(Collections.emptyMap(), Collections.singleton(id), Collections.emptySet(), Collections.emptySet());
+        }
+
+        private static Change removed(int id) {
+            return new Change(Collections.emptyMap(), Collections.emptySet(), Collections.singleton(id), Collections.emptySet());
+        }
+
+        private static Change exclusiveParameter(String id) {
+            return new Change(Collections.emptyMap(), Collections.emptySet(), Collections.emptySet(), Collections.singleton(id));
+        }
+
+        /**
+         * @return ids of all fractals that were modified, added or removed.
+         */
+        public Set<Integer> affectedFractals() {
+            Set<Integer> ids = new TreeSet<>(modifiedFractals.keySet());
+            ids.addAll(addedFractals);
+            ids.addAll(removedFractals);
+            return ids;
+        }
     }
 }
@@ -0,0 +1,46 @@
+package at.searles.fractviewlib;
+
+import at.searles.fractviewlib.render.RenderQueue;
+import at.searles.fractviewlib.render.Renderer;
+import at.searles.meelan.MeelanException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Previews of a fractal for a list of values of one parameter,
+ * eg to choose a juliapoint or a bailout value.
+ *
+ * Variants are derived from the fractal (see Fractal.derive), hence
+ * the source code is only parsed once and palette/scale variants
+ * are not even recompiled.
+ */
+public class ParameterAtlas {
+
+    private ParameterAtlas() {} // do not create instance.
+
+    /**
+     * Compilation is not thread safe, therefore variants are created
+     * in the calling thread.
+     */
+    public static List<Fractal> variants(Fractal fractal, String key, List<?> values) throws MeelanException {
+        List<Fractal> variants = new ArrayList<>(values.size());
+
+        for(Object value : values) {
+            variants.add(fractal.derive(key, value));
+        }
+
+        return variants;
+    }
+
+    /**
+     * Renders all variants in parallel. The results are in the same order as values.
+     */
+    public static <A> List<A> render(Fractal fractal, String key, List<?> values, Renderer<A> renderer, int width, int height, int parallelism) throws InterruptedException, ExecutionException {
+        return RenderQueue.runAll(values.size(), index -> {
+            Fractal variant = fractal.derive(key, values.get(index));
+            return () -> renderer.render(variant, width, height);
+        }, parallelism);
+    }
+}
@@ -18,44 +18,38 @@ public class ParameterTable {
 
     public static List<Entry> create(int selectedId, FractalCollection collection, Set<String> exclusiveParameterIds) {
         ArrayList<Entry> parameters = orderByExternDefinitions(selectedId, collection);
-        groupParameters(exclusiveParameterIds, parameters);
-
-        return parameters;
+        return groupParameters(exclusiveParameterIds, parameters);
     }
 
     /**
-     * Returns all required (=value is actually used and not just declared in
-     * the source code) parameters that should be shown in order
-     * of fractals and traversal.
+     * Order of extern declarations of all fractals. Externs that are not yet
+     * known are inserted right before the next known extern of the same fractal
+     * so that related externs stay together. The position of each extern is
+     * returned as its rank.
      */
-    private static ArrayList<Entry> requiredParameterEntries(ArrayList<Integer> order, FractalCollection collection) {
-        ArrayList<Entry> parameters = new ArrayList<>();
+    private static HashMap<String, Integer> createExternsOrder(ArrayList<Integer> order, FractalCollection collection) {
+        // linked list with an index to insert in constant time.
+        HashMap<String, ExternNode> nodes = new HashMap<>();
 
-        for(Integer id : order) {
-            for(Fractal.Parameter p : collection.get(id).requiredParameters()) { // those that are actually in use; including source/scale
-                Entry entry = new Entry(p.id, id);
-                parameters.add(entry);
-            }
-        }
+        ExternNode head = new ExternNode(null);
+        head.next = head.prev = head;
 
-        return parameters;
-    }
+        head.insertBefore(nodes, Fractal.SOURCE_LABEL);
+        head.insertBefore(nodes, Fractal.SCALE_LABEL);
 
-    private static LinkedHashSet<String> createExternsOrder(ArrayList<Integer> order, FractalCollection collection) {
-        ArrayList<String> allExterns = new ArrayList<>();
         ArrayList<String> localExterns = new ArrayList<>();
 
-        allExterns.add(Fractal.SOURCE_LABEL);
-        allExterns.add(Fractal.SCALE_LABEL);
-
         for(Integer id : order) {
             Fractal fractal = collection.get(id);
             for(ExternDeclaration extern: fractal.externDeclarations()) {
-                int pos = allExterns.indexOf(extern.id);
+                ExternNode node = nodes.get(extern.id);
 
-                if(pos != -1) {
+                if(node != null) {
                     // add before extern.
-                    allExterns.addAll(pos, localExterns);
+                    for(String key : localExterns) {
+                        node.insertBefore(nodes, key);
+                    }
+
                     localExterns.clear();
                 } else {
                     // does not exist yet.
@@ -63,109 +57,113 @@ public class ParameterTable {
                 }
             }
 
-            allExterns.addAll(localExterns);
+            for(String key : localExterns) {
+                head.insertBefore(nodes, key);
+            }
+
             localExterns.clear();
         }
 
-        return new LinkedHashSet<>(allExterns);
+        HashMap<String, Integer> ranks = new HashMap<>();
+
+        for(ExternNode node = head.next; node != head; node = node.next) {
+            ranks.put(node.key, ranks.size());
+        }
+
+        return ranks;
     }
 
+    /**
+     * Required (=value is actually used and not just declared in the source code)
+     * parameters are split into segments of an extern followed by the parameters
+     * that were created while traversing it (eg inlined parameters). Segments are
+     * ordered by the order of externs, and segments of the same extern by the
+     * order of fractals.
+     */
     private static ArrayList<Entry> orderByExternDefinitions(int selectedId, FractalCollection collection) {
-        // Step 1: Build up externs-order
         ArrayList<Integer> order = new ArrayList<>(collection.ids());
 
         if(order.remove((Integer) selectedId)) {
             order.add(0, selectedId);
         }
 
-        ArrayList<Entry> parameters = requiredParameterEntries(order, collection);
+        HashMap<String, Integer> ranks = createExternsOrder(order, collection);
 
-        Set<String> externsOrder = createExternsOrder(order, collection);
+        ArrayList<ArrayList<Entry>> segmentsByRank = new ArrayList<>(ranks.size());
 
-        int pos = 0;
-
-        for(String key : externsOrder) {
-            for(Integer id : order) {
-                int startRange = pos; // things ahead were already sorted.
-
-                // find parameter
-                while(startRange < parameters.size()) {
-                    Entry p = parameters.get(startRange);
-                    if(p.key.equals(key) && id.equals(p.id)) {
-                        break;
-                    }
+        for(int i = 0; i < ranks.size(); ++i) {
+            segmentsByRank.add(new ArrayList<>());
+        }
 
-                    startRange++;
-                }
+        // entries that do not follow an extern are kept at the end.
+        ArrayList<Entry> unsorted = new ArrayList<>();
 
-                if (startRange >= parameters.size()) {
-                    // not found.
-                    continue;
-                }
+        int size = 0;
 
-                // yes found. Find all dependants.
+        ArrayList<Entry> segment = null;
 
-                int endRange = startRange + 1;
+        for(Integer id : order) {
+            for(Fractal.Parameter p : collection.get(id).requiredParameters()) { // those that are actually in use; including source/scale
+                Integer rank = ranks.get(p.id);
 
-                while(endRange < parameters.size() &&
-                        !externsOrder.contains(parameters.get(endRange).key)) {
-                    endRange++;
+                if(rank != null) {
+                    segment = segmentsByRank.get(rank);
                 }
 
-                moveRangeTo(startRange, endRange, pos, parameters);
-                pos += endRange - startRange;
+                (segment != null ? segment : unsorted).add(new Entry(p.id, id));
+                size++;
             }
         }
-        return parameters;
-    }
 
-    /**
-     * Moves entries in visibleParameters from startRange/endRange(excl)
-     * to pos.
-     * eg [a,b,c,d,e].moveRangeTo(2,4,1) results in
-     * [a,c,d,b,e]. pos is assumed to be ahead of startRange.
-     */
-    private static <A> void moveRangeTo(int startRange, int endRange, int pos, List<A> list) {
-        if(startRange == pos) {
-            // nothing to do.
-            return;
+        ArrayList<Entry> parameters = new ArrayList<>(size);
+
+        for(ArrayList<Entry> segments : segmentsByRank) {
+            parameters.addAll(segments);
         }
 
-        // pos is always ahead of startRange
-        reverse(pos, endRange, list);
-        reverse(pos, pos + endRange - startRange, list);
-        reverse(pos + endRange - startRange, endRange, list);
-        // this is just beautiful...
-    }
+        parameters.addAll(unsorted);
 
-    /**
-     * Reverses range start (incl) to end (excl) in visibleParameters
-     */
-    private static <A> void reverse(int start, int end, List<A> list) {
-        for(int l = start, r = end - 1; l < r; ++l, r--) {
-            A tmp = list.get(l);
-            list.set(l, list.get(r));
-            list.set(r, tmp);
-        }
+        return parameters;
     }
 
     /**
-     * Adds the first entry for shared parameters.
+     * Only keeps the first entry for shared parameters.
      */
-    private static void groupParameters(Set<String> exclusiveParameterIds, ArrayList<Entry> parameters) {
-        // use only one entry for shared parameters
+    private static ArrayList<Entry> groupParameters(Set<String> exclusiveParameterIds, ArrayList<Entry> parameters) {
         Set<String> markSharedParameters = new HashSet<>();
+        ArrayList<Entry> grouped = new ArrayList<>(parameters.size());
 
-        for (int i = 0; i < parameters.size(); ++i) {
-            String key = parameters.get(i).key;
-            if (markSharedParameters.contains(key)) {
+        for(Entry entry : parameters) {
+            if(exclusiveParameterIds.contains(entry.key)) {
+                grouped.add(entry);
+            } else if(markSharedParameters.add(entry.key)) {
                 // XXX should I check the parameter type?
-                parameters.remove(i);
-                i--;
-            } else if (!exclusiveParameterIds.contains(key)) {
-                markSharedParameters.add(key);
+                grouped.add(entry);
             }
         }
+
+        return grouped;
+    }
+
+    private static class ExternNode {
+        final String key;
+        ExternNode prev;
+        ExternNode next;
+
+        ExternNode(String key) {
+            this.key = key;
+        }
+
+        void insertBefore(HashMap<String, ExternNode> nodes, String key) {
+            ExternNode node = new ExternNode(key);
+
+            node.prev = prev;
+            node.next = this;
+            prev.next = node;
+            prev = node;
+
+            nodes.put(key, node);
+        }
     }
 
     public static class Entry {
@@ -176,5 +174,29 @@ public class ParameterTable {
             this.key = key;
             this.id = id;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+
+            if(!(o instanceof Entry)) {
+                return false;
+            }
+
+            Entry other = (Entry) o;
+            return id == other.id && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + id;
+        }
+
+        @Override
+        public String toString() {
+            return key + "@" + id;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,347 @@
+package at.searles.fractviewlib;
+
+import at.searles.fractviewlib.data.ParameterValues;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Parameter table of a FractalProvider that is kept up to date. Whenever
+ * the provider is modified, the table is updated and listeners receive
+ * the changes that transform the old table into the new one. This way,
+ * a UI list only has to update modified rows.
+ *
+ * The order of the table depends on all fractals, hence the table is
+ * recreated (see ParameterTable) and compared to the old one.
+ */
+public class ParameterTableModel implements FractalProvider.Listener {
+
+    private final FractalProvider provider;
+    private final List<Listener> listeners;
+
+    private int selectedId;
+
+    private List<ParameterTable.Entry> entries;
+
+    /**
+     * Parameters in the same order as entries. Used to detect modified values.
+     */
+    private List<Fractal.Parameter> parameters;
+
+    public ParameterTableModel(FractalProvider provider, int selectedId) {
+        this.provider = provider;
+        this.selectedId = selectedId;
+        this.listeners = new ArrayList<>(2);
+
+        this.entries = provider.createTable(selectedId);
+        this.parameters = parametersOf(entries);
+
+        provider.addListener(this);
+    }
+
+    /**
+     * Unregisters this model from the provider.
+     */
+    public void dispose() {
+        provider.removeListener(this);
+    }
+
+    public void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    public boolean removeListener(Listener l) {
+        return listeners.remove(l);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public ParameterTable.Entry get(int index) {
+        return entries.get(index);
+    }
+
+    public Fractal.Parameter parameter(int index) {
+        return parameters.get(index);
+    }
+
+    public List<ParameterTable.Entry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public void setSelectedId(int selectedId) {
+        if(this.selectedId != selectedId) {
+            this.selectedId = selectedId;
+            update();
+        }
+    }
+
+    @Override
+    public void parameterMapUpdated(FractalProvider src) {
+        update();
+    }
+
+    /**
+     * Recreates the table and informs listeners if something changed.
+     * @return the changes.
+     */
+    public List<Change> update() {
+        List<ParameterTable.Entry> newEntries = provider.createTable(selectedId);
+        List<Fractal.Parameter> newParameters = parametersOf(newEntries);
+
+        List<Change> changes = diff(entries, newEntries);
+
+        HashMap<ParameterTable.Entry, Fractal.Parameter> oldParameters = new HashMap<>();
+
+        for(int i = 0; i < entries.size(); ++i) {
+            oldParameters.put(entries.get(i), parameters.get(i));
+        }
+
+        for(int i = 0; i < newEntries.size(); ++i) {
+            Fractal.Parameter oldParameter = oldParameters.get(newEntries.get(i));
+
+            if(oldParameter != null && isModified(oldParameter, newParameters.get(i))) {
+                changes.add(new Change(Change.Type.Update, i, i, newEntries.get(i)));
+            }
+        }
+
+        this.entries = newEntries;
+        this.parameters = newParameters;
+
+        if(!changes.isEmpty()) {
+            for(Listener l : listeners) {
+                l.tableChanged(this, changes);
+            }
+        }
+
+        return changes;
+    }
+
+    private List<Fractal.Parameter> parametersOf(List<ParameterTable.Entry> entries) {
+        List<Fractal.Parameter> parameters = new ArrayList<>(entries.size());
+
+        for(ParameterTable.Entry entry : entries) {
+            parameters.add(provider.getParameter(entry.key, entry.id));
+        }
+
+        return parameters;
+    }
+
+    private static boolean isModified(Fractal.Parameter oldParameter, Fractal.Parameter newParameter) {
+        if(oldParameter == newParameter) {
+            return false;
+        }
+
+        if(oldParameter == null || newParameter == null) {
+            return true;
+        }
+
+        // entries are recreated on every compilation.
+        return oldParameter.type != newParameter.type
+                || oldParameter.isDefault != newParameter.isDefault
+                || !Objects.equals(oldParameter.description, newParameter.description)
+                || !ParameterValues.equals(oldParameter.value, newParameter.value);
+    }
+
+    /**
+     * Creates removes, inserts and moves that transform oldEntries into newEntries
+     * if applied in the returned order. First, all removed entries are removed.
+     * Entries in the longest subsequence that is in the same order in both
+     * lists are not moved; all other entries are inserted or moved
+     * right behind their predecessor in newEntries.
+     */
+    static List<Change> diff(List<ParameterTable.Entry> oldEntries, List<ParameterTable.Entry> newEntries) {
+        List<Change> changes = new ArrayList<>();
+
+        HashMap<ParameterTable.Entry, Integer> newIndices = new HashMap<>();
+
+        for(int i = 0; i < newEntries.size(); ++i) {
+            newIndices.put(newEntries.get(i), i);
+        }
+
+        // removing from the back does not shift the other entries.
+        for(int i = oldEntries.size() - 1; i >= 0; --i) {
+            if(!newIndices.containsKey(oldEntries.get(i))) {
+                changes.add(new Change(Change.Type.Remove, i, i, oldEntries.get(i)));
+            }
+        }
+
+        // new indices of the remaining entries in their old order.
+        int[] sequence = new int[oldEntries.size()];
+        int remaining = 0;
+
+        // position among the remaining entries by new index, -1 if it is inserted.
+        int[] oldPositions = new int[newEntries.size()];
+        Arrays.fill(oldPositions, -1);
+
+        for(ParameterTable.Entry entry : oldEntries) {
+            Integer newIndex = newIndices.get(entry);
+
+            if(newIndex != null) {
+                oldPositions[newIndex] = remaining;
+                sequence[remaining++] = newIndex;
+            }
+        }
+
+        boolean[] isStable = new boolean[newEntries.size()];
+
+        for(int newIndex : longestIncreasingSubsequence(Arrays.copyOf(sequence, remaining))) {
+            isStable[newIndex] = true;
+        }
+
+        // Between two stable entries, entries that are already at their new
+        // place come first in new order, followed by entries that are still
+        // at their old place in old order. Hence each entry gets a slot for
+        // its old and for its new place, and the index of an entry is the
+        // number of occupied slots before its slot.
+        int[] oldSlots = new int[remaining];
+        int[] newSlots = new int[newEntries.size()];
+        int slotCount = 0;
+        int position = 0;
+
+        for(int i = 0; i < newEntries.size(); ++i) {
+            if(isStable[i]) {
+                while(position < oldPositions[i]) {
+                    oldSlots[position++] = slotCount++;
+                }
+
+                oldSlots[position++] = newSlots[i] = slotCount++;
+            } else {
+                newSlots[i] = slotCount++;
+            }
+        }
+
+        while(position < remaining) {
+            oldSlots[position++] = slotCount++;
+        }
+
+        // Fenwick tree of occupied slots.
+        int[] occupied = new int[slotCount + 1];
+
+        for(int slot : oldSlots) {
+            addToSlot(occupied, slot, 1);
+        }
+
+        for(int i = 0; i < newEntries.size(); ++i) {
+            if(isStable[i]) {
+                continue;
+            }
+
+            ParameterTable.Entry entry = newEntries.get(i);
+
+            if(oldPositions[i] != -1) {
+                int oldSlot = oldSlots[oldPositions[i]];
+                int from = countBefore(occupied, oldSlot);
+
+                addToSlot(occupied, oldSlot, -1);
+                addToSlot(occupied, newSlots[i], 1);
+
+                int to = countBefore(occupied, newSlots[i]);
+
+                if(from != to) {
+                    changes.add(new Change(Change.Type.Move, from, to, entry));
+                }
+            } else {
+                addToSlot(occupied, newSlots[i], 1);
+
+                int to = countBefore(occupied, newSlots[i]);
+                changes.add(new Change(Change.Type.Insert, to, to, entry));
+            }
+        }
+
+        return changes;
+    }
+
+    private static void addToSlot(int[] tree, int slot, int delta) {
+        for(int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static int countBefore(int[] tree, int slot) {
+        int count = 0;
+
+        for(int i = slot; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the values of a longest increasing subsequence.
+     */
+    private static int[] longestIncreasingSubsequence(int[] sequence) {
+        int[] tailIndices = new int[sequence.length];
+        int[] predecessors = new int[sequence.length];
+        int length = 0;
+
+        for(int i = 0; i < sequence.length; ++i) {
+            // binary search for the first tail that is not smaller.
+            int lo = 0, hi = length;
+
+            while(lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if(sequence[tailIndices[mid]] < sequence[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            predecessors[i] = lo > 0 ? tailIndices[lo - 1] : -1;
+            tailIndices[lo] = i;
+
+            if(lo == length) {
+                length++;
+            }
+        }
+
+        int[] lis = new int[length];
+
+        for(int i = length - 1, k = length > 0 ? tailIndices[length - 1] : -1; i >= 0; --i, k = predecessors[k]) {
+            lis[i] = sequence[k];
+        }
+
+        return lis;
+    }
+
+    public interface Listener {
+        /**
+         * Called after the table was modified.
+         */
+        void tableChanged(ParameterTableModel model, List<Change> changes);
+    }
+
+    /**
+     * A modification of the table. Remove, Insert and Move are meant to be applied
+     * in the given order; Move removes the entry at index and then inserts
+     * it at toIndex. Updates refer to indices in the new table.
+     */
+    public static class Change {
+        public enum Type { Insert, Remove, Move, Update }
+
+        public final Type type;
+        public final int index;
+        public final int toIndex;
+        public final ParameterTable.Entry entry;
+
+        Change(Type type, int index, int toIndex, ParameterTable.Entry entry) {
+            this.type = type;
+            this.index = index;
+            this.toIndex = toIndex;
+            this.entry = entry;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + index + (type == Type.Move ? "->" + toIndex : "") + ", " + entry + ")";
+        }
+    }
+}
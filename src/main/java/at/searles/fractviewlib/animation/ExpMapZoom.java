@@ -0,0 +1,193 @@
+package at.searles.fractviewlib.animation;
+
+import at.searles.commons.math.Scale;
+import at.searles.fractviewlib.render.RenderQueue;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Zoom video into the center of a scale using an exponential map. Instead of
+ * rendering each frame, a single log-polar strip is rendered: columns are angles
+ * around the center, rows are logarithmically spaced radii from the depth of the
+ * last frame up to the corners of the first frame (see renderStrip). Each frame
+ * is then resampled from the strip.
+ *
+ * Screen coordinates are normalized like for Scale: the shorter side of a frame
+ * ranges from -1 to 1, and (x, y) is mapped to (xx x + yx y + cx, xy x + yy y + cy).
+ */
+public class ExpMapZoom {
+
+    /**
+     * Number of strip rows that are rendered in one job.
+     */
+    private static final int ROWS_PER_JOB = 16;
+
+    private final Scale scale;
+    private final double zoomFactor;
+
+    private final int frameWidth;
+    private final int frameHeight;
+
+    private final int stripWidth;
+    private final int stripHeight;
+
+    private final double minRadius;
+    private final double logRadiusRange;
+
+    /**
+     * @param scale The scale of the first frame. Its center is the zoom target.
+     * @param zoomFactor Zoom of the last frame relative to the first one.
+     * @param stripWidth Number of angles in the strip. Roughly the circumference
+     *                   of the frame in pixels gives full resolution.
+     */
+    public ExpMapZoom(Scale scale, double zoomFactor, int frameWidth, int frameHeight, int stripWidth) {
+        if(zoomFactor < 1) {
+            throw new IllegalArgumentException("only zooming in is supported");
+        }
+
+        this.scale = scale;
+        this.zoomFactor = zoomFactor;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.stripWidth = stripWidth;
+
+        // the radius of the first frame must cover all corners.
+        double cornerX = (double) frameWidth / Math.min(frameWidth, frameHeight);
+        double cornerY = (double) frameHeight / Math.min(frameWidth, frameHeight);
+
+        double maxRadius = Math.max(
+                Math.hypot(scale.xx * cornerX + scale.yx * cornerY, scale.xy * cornerX + scale.yy * cornerY),
+                Math.hypot(scale.xx * cornerX - scale.yx * cornerY, scale.xy * cornerX - scale.yy * cornerY));
+
+        // in the last frame, the innermost pixel is about one pixel away from the center.
+        this.minRadius = maxRadius / zoomFactor / Math.max(frameWidth, frameHeight);
+        this.logRadiusRange = Math.log(maxRadius / minRadius);
+
+        // rows are spaced such that strip pixels are roughly square.
+        this.stripHeight = (int) Math.ceil(logRadiusRange * stripWidth / (2 * Math.PI)) + 1;
+    }
+
+    public int stripWidth() {
+        return stripWidth;
+    }
+
+    public int stripHeight() {
+        return stripHeight;
+    }
+
+    /**
+     * Fractal coordinates of the strip pixel (u, v) stored in dst[0] and dst[1].
+     * This is the mapping that the renderer must use for the strip.
+     */
+    public void stripPoint(double u, double v, double[] dst) {
+        double angle = 2 * Math.PI * u / stripWidth;
+        double radius = minRadius * Math.exp(v * logRadiusRange / (stripHeight - 1));
+
+        dst[0] = scale.cx + radius * Math.cos(angle);
+        dst[1] = scale.cy + radius * Math.sin(angle);
+    }
+
+    /**
+     * Renders the strip using parallelism threads.
+     * @return the strip with stripWidth * stripHeight pixels, row by row.
+     */
+    public int[] renderStrip(PointRenderer renderer, int parallelism) throws InterruptedException, ExecutionException {
+        int[] strip = new int[stripWidth * stripHeight];
+        int jobCount = (stripHeight + ROWS_PER_JOB - 1) / ROWS_PER_JOB;
+
+        RenderQueue.run(jobCount, index -> () -> {
+            double[] pt = new double[2];
+            int end = Math.min(stripHeight, (index + 1) * ROWS_PER_JOB);
+
+            for(int v = index * ROWS_PER_JOB; v < end; ++v) {
+                for(int u = 0; u < stripWidth; ++u) {
+                    stripPoint(u, v, pt);
+                    strip[v * stripWidth + u] = renderer.color(pt[0], pt[1]);
+                }
+            }
+
+            return null;
+        }, (index, result) -> {}, parallelism);
+
+        return strip;
+    }
+
+    /**
+     * Zoom of the given frame if count frames are spread evenly in log space.
+     */
+    public double zoomOfFrame(int index, int count) {
+        return count <= 1 ? 1 : Math.pow(zoomFactor, (double) index / (count - 1));
+    }
+
+    /**
+     * Resamples a frame from the strip.
+     * @param zoom Between 1 (first frame) and zoomFactor (last frame).
+     * @param strip The rendered strip with stripWidth * stripHeight pixels.
+     * @param frame Target with frameWidth * frameHeight pixels.
+     */
+    public void frame(double zoom, int[] strip, int[] frame) {
+        double norm = Math.min(frameWidth, frameHeight);
+
+        for(int py = 0; py < frameHeight; ++py) {
+            double y = (2 * py + 1 - frameHeight) / norm;
+
+            for(int px = 0; px < frameWidth; ++px) {
+                double x = (2 * px + 1 - frameWidth) / norm;
+
+                double dx = (scale.xx * x + scale.yx * y) / zoom;
+                double dy = (scale.xy * x + scale.yy * y) / zoom;
+
+                double radius = Math.hypot(dx, dy);
+
+                double u = Math.atan2(dy, dx) / (2 * Math.PI) * stripWidth;
+                double v = radius <= minRadius ? 0 : Math.log(radius / minRadius) / logRadiusRange * (stripHeight - 1);
+
+                frame[py * frameWidth + px] = sample(strip, u, v);
+            }
+        }
+    }
+
+    /**
+     * Bilinear sample, wrapping in u and clamping in v.
+     */
+    private int sample(int[] strip, double u, double v) {
+        v = Math.min(v, stripHeight - 1);
+
+        double fu = Math.floor(u);
+        int v0 = (int) v;
+
+        int u0 = (int) Math.floorMod((long) fu, (long) stripWidth);
+        int u1 = (u0 + 1) % stripWidth;
+        int v1 = Math.min(v0 + 1, stripHeight - 1);
+
+        double du = u - fu;
+        double dv = v - v0;
+
+        int c00 = strip[v0 * stripWidth + u0];
+        int c01 = strip[v0 * stripWidth + u1];
+        int c10 = strip[v1 * stripWidth + u0];
+        int c11 = strip[v1 * stripWidth + u1];
+
+        int argb = 0;
+
+        for(int shift = 0; shift < 32; shift += 8) {
+            double top = ((c00 >>> shift) & 0xff) * (1 - du) + ((c01 >>> shift) & 0xff) * du;
+            double bottom = ((c10 >>> shift) & 0xff) * (1 - du) + ((c11 >>> shift) & 0xff) * du;
+
+            argb |= ((int) (top * (1 - dv) + bottom * dv + 0.5)) << shift;
+        }
+
+        return argb;
+    }
+
+    /**
+     * Draws single points of the fractal. Like TiledExport.TileRenderer,
+     * it is provided by the platform and called concurrently.
+     */
+    public interface PointRenderer {
+        /**
+         * @return the ARGB color at the fractal coordinates (x, y).
+         */
+        int color(double x, double y);
+    }
+}
@@ -0,0 +1,168 @@
+package at.searles.fractviewlib.animation;
+
+import at.searles.commons.math.Scale;
+import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.data.ParameterType;
+import at.searles.fractviewlib.render.RenderQueue;
+import at.searles.fractviewlib.render.Renderer;
+import at.searles.meelan.optree.inlined.ExternDeclaration;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Frames of a zoom/pan animation between keyframes. The scale is
+ * interpolated geometrically: the zoom factor changes exponentially,
+ * the rotation angle linearly and the center is moved such that the
+ * fixed point of the zoom stays at the same position on the screen.
+ * All other parameters are taken from the keyframe at the start of the segment.
+ */
+public class ZoomAnimation {
+
+    private final List<FractalData> keyframes;
+    private final int framesPerSegment;
+
+    public ZoomAnimation(List<FractalData> keyframes, int framesPerSegment) {
+        if(keyframes.isEmpty() || framesPerSegment < 1) {
+            throw new IllegalArgumentException("at least one keyframe and one frame per segment required");
+        }
+
+        this.keyframes = keyframes;
+        this.framesPerSegment = framesPerSegment;
+    }
+
+    public int frameCount() {
+        return (keyframes.size() - 1) * framesPerSegment + 1;
+    }
+
+    public FractalData frame(int index) {
+        int segment = index / framesPerSegment;
+
+        if(segment >= keyframes.size() - 1) {
+            return keyframes.get(keyframes.size() - 1);
+        }
+
+        return keyframes.get(segment).copySetParameter(Fractal.SCALE_LABEL, frameScale(index));
+    }
+
+    private Scale frameScale(int index) {
+        int segment = index / framesPerSegment;
+
+        FractalData start = keyframes.get(segment);
+        FractalData end = keyframes.get(segment + 1);
+
+        double t = (double) (index % framesPerSegment) / framesPerSegment;
+
+        return interpolate(scaleOf(start), scaleOf(end), t);
+    }
+
+    /**
+     * Same as in Fractal: Custom scale, declared scale or default scale.
+     */
+    static Scale scaleOf(FractalData data) {
+        Scale scale = (Scale) data.getValue(Fractal.SCALE_LABEL);
+
+        if(scale != null) {
+            return scale;
+        }
+
+        ExternDeclaration declaredScale = data.externDecls().get(Fractal.SCALE_LABEL);
+
+        if(declaredScale != null) {
+            return (Scale) ParameterType.Scale.toValue(declaredScale.value);
+        }
+
+        return Fractal.DEFAULT_SCALE;
+    }
+
+    /**
+     * Geometric interpolation between two scales.
+     * @param t 0 returns a, 1 returns b.
+     */
+    public static Scale interpolate(Scale a, Scale b, double t) {
+        double sa = Math.sqrt(Math.abs(a.xx * a.yy - a.xy * a.yx));
+        double sb = Math.sqrt(Math.abs(b.xx * b.yy - b.xy * b.yx));
+
+        double angleA = Math.atan2(a.xy, a.xx);
+        double angleB = Math.atan2(b.xy, b.xx);
+
+        // rotate along the shorter way.
+        double deltaAngle = Math.IEEEremainder(angleB - angleA, 2 * Math.PI);
+
+        double ratio = sb / sa;
+        double zoom = Math.pow(ratio, t); // relative to a
+        double angle = angleA + deltaAngle * t;
+
+        // shape (eg shear or mirroring) without rotation and zoom is
+        // interpolated linearly.
+        double[] shapeA = shape(a, sa, angleA);
+        double[] shapeB = shape(b, sb, angleB);
+
+        double[] shape = new double[4];
+
+        for(int i = 0; i < 4; ++i) {
+            shape[i] = shapeA[i] + (shapeB[i] - shapeA[i]) * t;
+        }
+
+        double s = sa * zoom;
+        double cos = Math.cos(angle) * s;
+        double sin = Math.sin(angle) * s;
+
+        // center: c(t) = c0 + (c1 - c0) * (r^t - 1) / (r - 1) keeps the zoom fixpoint in place.
+        double centerFactor = Math.abs(ratio - 1) < 1e-12 ? t : (zoom - 1) / (ratio - 1);
+
+        return new Scale(
+                cos * shape[0] - sin * shape[1],
+                sin * shape[0] + cos * shape[1],
+                cos * shape[2] - sin * shape[3],
+                sin * shape[2] + cos * shape[3],
+                a.cx + (b.cx - a.cx) * centerFactor,
+                a.cy + (b.cy - a.cy) * centerFactor
+        );
+    }
+
+    /**
+     * Returns the matrix of scale after removing the zoom s and the rotation angle.
+     * The order is xx, xy, yx, yy.
+     */
+    private static double[] shape(Scale scale, double s, double angle) {
+        double cos = Math.cos(-angle) / s;
+        double sin = Math.sin(-angle) / s;
+
+        return new double[]{
+                cos * scale.xx - sin * scale.xy,
+                sin * scale.xx + cos * scale.xy,
+                cos * scale.yx - sin * scale.yy,
+                sin * scale.yx + cos * scale.yy
+        };
+    }
+
+    /**
+     * Renders all frames using parallelism threads and passes them in order
+     * to the sink. Keyframes are compiled once, frames only differ in the
+     * scale and hence are derived without recompiling.
+     */
+    public <A> void render(Renderer<A> renderer, RenderQueue.Sink<A> sink, int width, int height, int parallelism) throws InterruptedException, ExecutionException {
+        Fractal[] compiled = new Fractal[keyframes.size()];
+
+        RenderQueue.run(frameCount(), index -> {
+            int segment = Math.min(index / framesPerSegment, keyframes.size() - 1);
+
+            if(compiled[segment] == null) {
+                compiled[segment] = Fractal.fromData(keyframes.get(segment));
+
+                if(segment > 0) {
+                    // frames are created in order.
+                    compiled[segment - 1] = null;
+                }
+            }
+
+            Fractal frame = segment == keyframes.size() - 1
+                    ? compiled[segment]
+                    : compiled[segment].derive(Fractal.SCALE_LABEL, frameScale(index));
+
+            return () -> renderer.render(frame, width, height);
+        }, sink, parallelism);
+    }
+}
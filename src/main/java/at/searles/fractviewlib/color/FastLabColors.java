@@ -0,0 +1,141 @@
+package at.searles.fractviewlib.color;
+
+import java.util.stream.IntStream;
+
+/**
+ * Table based variant of LabColors. The gamma curve is tabulated, and so is the
+ * cube root in the conversion to Lab. No memory is allocated per color.
+ *
+ * Error bounds (verified in tests against LabColors):
+ * lab2int differs by at most 1 in each 8-bit channel,
+ * int2lab differs by less than 0.01 in each Lab component.
+ */
+public class FastLabColors {
+
+    private static final int GAMMA_SIZE = 1 << 16;
+    private static final int CBRT_SEGMENTS = 1 << 12;
+
+    private static final double DELTA = 6. / 29.;
+    private static final double CBRT_MIN = DELTA * DELTA * DELTA;
+    private static final double CBRT_MAX = 1.01;
+
+    /**
+     * Number of colors per parallel task in the bulk conversion.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private static class Tables {
+        // linear rgb in [0, 1] to 8-bit sRGB.
+        static final byte[] GAMMA = new byte[GAMMA_SIZE];
+
+        // 8-bit sRGB to linear rgb.
+        static final float[] DEGAMMA = new float[256];
+
+        // cube root between CBRT_MIN and CBRT_MAX.
+        static final double[] CBRT = new double[CBRT_SEGMENTS + 1];
+
+        static {
+            for(int i = 0; i < GAMMA_SIZE; ++i) {
+                GAMMA[i] = (byte) LabColors.toByte(LabColors.linear2srgb((double) i / (GAMMA_SIZE - 1)));
+            }
+
+            for(int i = 0; i < 256; ++i) {
+                DEGAMMA[i] = (float) LabColors.srgb2linear(i / 255.);
+            }
+
+            for(int i = 0; i <= CBRT_SEGMENTS; ++i) {
+                CBRT[i] = Math.cbrt(CBRT_MIN + (CBRT_MAX - CBRT_MIN) * i / CBRT_SEGMENTS);
+            }
+        }
+    }
+
+    private FastLabColors() {} // do not create instance.
+
+    public static int lab2int(float l, float a, float b, float alpha) {
+        double fy = (l + 16.) / 116.;
+        double fx = fy + a / 500.;
+        double fz = fy - b / 200.;
+
+        double x = LabColors.XN * LabColors.finv(fx);
+        double y = LabColors.YN * LabColors.finv(fy);
+        double z = LabColors.ZN * LabColors.finv(fz);
+
+        int r = gamma(3.2404542 * x - 1.5371385 * y - 0.4985314 * z);
+        int g = gamma(-0.9692660 * x + 1.8760108 * y + 0.0415560 * z);
+        int bl = gamma(0.0556434 * x - 0.2040259 * y + 1.0572252 * z);
+
+        return LabColors.toByte(alpha) << 24 | r << 16 | g << 8 | bl;
+    }
+
+    public static int lab2int(float[] lab, int offset) {
+        return lab2int(lab[offset], lab[offset + 1], lab[offset + 2], lab[offset + 3]);
+    }
+
+    public static void int2lab(int argb, float[] lab, int offset) {
+        double r = Tables.DEGAMMA[(argb >> 16) & 0xff];
+        double g = Tables.DEGAMMA[(argb >> 8) & 0xff];
+        double b = Tables.DEGAMMA[argb & 0xff];
+
+        double fx = f((0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / LabColors.XN);
+        double fy = f((0.2126729 * r + 0.7151522 * g + 0.0721750 * b) / LabColors.YN);
+        double fz = f((0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / LabColors.ZN);
+
+        lab[offset] = (float) (116. * fy - 16.);
+        lab[offset + 1] = (float) (500. * (fx - fy));
+        lab[offset + 2] = (float) (200. * (fy - fz));
+        lab[offset + 3] = ((argb >>> 24) & 0xff) / 255.f;
+    }
+
+    /**
+     * Converts count colors from lab (4 floats per color) to argb.
+     */
+    public static void lab2int(float[] lab, int labOffset, int[] argb, int argbOffset, int count) {
+        for(int i = 0; i < count; ++i) {
+            int j = labOffset + 4 * i;
+            argb[argbOffset + i] = lab2int(lab[j], lab[j + 1], lab[j + 2], lab[j + 3]);
+        }
+    }
+
+    /**
+     * Converts the whole buffer in parallel. argb must have
+     * at least lab.length / 4 elements.
+     */
+    public static void lab2intParallel(float[] lab, int[] argb) {
+        int count = lab.length / 4;
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = chunk * CHUNK_SIZE;
+            int end = Math.min(count, start + CHUNK_SIZE);
+            lab2int(lab, 4 * start, argb, start, end - start);
+        });
+    }
+
+    private static int gamma(double linear) {
+        if(linear <= 0) {
+            return 0;
+        }
+
+        if(linear >= 1) {
+            return 255;
+        }
+
+        return Tables.GAMMA[(int) (linear * (GAMMA_SIZE - 1) + 0.5)] & 0xff;
+    }
+
+    private static double f(double t) {
+        if(t <= CBRT_MIN) {
+            return t / (3. * DELTA * DELTA) + 4. / 29.;
+        }
+
+        if(t >= CBRT_MAX) {
+            return Math.cbrt(t);
+        }
+
+        double pos = (t - CBRT_MIN) / (CBRT_MAX - CBRT_MIN) * CBRT_SEGMENTS;
+        int index = (int) pos;
+        double frac = pos - index;
+
+        return Tables.CBRT[index] + (Tables.CBRT[index + 1] - Tables.CBRT[index]) * frac;
+    }
+}
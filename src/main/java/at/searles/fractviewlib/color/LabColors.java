@@ -0,0 +1,78 @@
+package at.searles.fractviewlib.color;
+
+/**
+ * Exact conversions between ARGB and the CIE-Lab color space (D65 white point,
+ * sRGB gamma). Lab colors are stored as float[4] = {L, a, b, alpha} with
+ * L in [0, 100] and alpha in [0, 1] like the quats that are used in
+ * fractal programs.
+ */
+public class LabColors {
+
+    // D65
+    static final double XN = 0.95047;
+    static final double YN = 1.0;
+    static final double ZN = 1.08883;
+
+    private static final double DELTA = 6. / 29.;
+
+    private LabColors() {} // do not create instance.
+
+    public static void int2lab(int argb, float[] lab, int offset) {
+        double r = srgb2linear(((argb >> 16) & 0xff) / 255.);
+        double g = srgb2linear(((argb >> 8) & 0xff) / 255.);
+        double b = srgb2linear((argb & 0xff) / 255.);
+
+        double fx = f((0.4124564 * r + 0.3575761 * g + 0.1804375 * b) / XN);
+        double fy = f((0.2126729 * r + 0.7151522 * g + 0.0721750 * b) / YN);
+        double fz = f((0.0193339 * r + 0.1191920 * g + 0.9503041 * b) / ZN);
+
+        lab[offset] = (float) (116. * fy - 16.);
+        lab[offset + 1] = (float) (500. * (fx - fy));
+        lab[offset + 2] = (float) (200. * (fy - fz));
+        lab[offset + 3] = ((argb >>> 24) & 0xff) / 255.f;
+    }
+
+    public static int lab2int(float[] lab, int offset) {
+        double fy = (lab[offset] + 16.) / 116.;
+        double fx = fy + lab[offset + 1] / 500.;
+        double fz = fy - lab[offset + 2] / 200.;
+
+        double x = XN * finv(fx);
+        double y = YN * finv(fy);
+        double z = ZN * finv(fz);
+
+        double r = linear2srgb(3.2404542 * x - 1.5371385 * y - 0.4985314 * z);
+        double g = linear2srgb(-0.9692660 * x + 1.8760108 * y + 0.0415560 * z);
+        double b = linear2srgb(0.0556434 * x - 0.2040259 * y + 1.0572252 * z);
+
+        return toByte(lab[offset + 3]) << 24 | toByte(r) << 16 | toByte(g) << 8 | toByte(b);
+    }
+
+    static int toByte(double d) {
+        if(d <= 0) {
+            return 0;
+        }
+
+        if(d >= 1) {
+            return 255;
+        }
+
+        return (int) (d * 255. + 0.5);
+    }
+
+    static double srgb2linear(double c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+
+    static double linear2srgb(double c) {
+        return c <= 0.0031308 ? 12.92 * c : 1.055 * Math.pow(c, 1. / 2.4) - 0.055;
+    }
+
+    static double f(double t) {
+        return t > DELTA * DELTA * DELTA ? Math.cbrt(t) : t / (3. * DELTA * DELTA) + 4. / 29.;
+    }
+
+    static double finv(double t) {
+        return t > DELTA ? t * t * t : 3. * DELTA * DELTA * (t - 4. / 29.);
+    }
+}
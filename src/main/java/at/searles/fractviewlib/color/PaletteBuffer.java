@@ -0,0 +1,167 @@
+package at.searles.fractviewlib.color;
+
+import at.searles.commons.color.Palette;
+import at.searles.fractviewlib.data.ParameterValues;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All palette tables of a fractal packed into one contiguous buffer
+ * so that they can be transferred to a renderer in one piece.
+ * The table of the i-th palette starts at offset(i).
+ *
+ * Like PaletteTable, buffers are interned by the content of the
+ * palettes, hence fractals (and cached states of the same fractal)
+ * with equal palettes share the same buffer.
+ */
+public class PaletteBuffer {
+
+    /**
+     * Number of buffers that are kept in the interned cache.
+     */
+    private static final int CACHE_CAPACITY = 16;
+
+    private static final LinkedHashMap<Key, PaletteBuffer> cache = new LinkedHashMap<Key, PaletteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, PaletteBuffer> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    private final float[] data;
+    private final int[] offsets;
+    private final int[] columns;
+    private final int[] rows;
+
+    private PaletteBuffer(float[] data, int[] offsets, int[] columns, int[] rows) {
+        this.data = data;
+        this.offsets = offsets;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    public static PaletteBuffer get(List<Palette> palettes) {
+        return get(palettes, PaletteTable.DEFAULT_COLUMNS);
+    }
+
+    /**
+     * Returns the (possibly shared) buffer for these palettes.
+     */
+    public static synchronized PaletteBuffer get(List<Palette> palettes, int columns) {
+        Key key = new Key(palettes, columns);
+
+        PaletteBuffer buffer = cache.get(key);
+
+        if(buffer == null) {
+            buffer = create(key.palettes, columns);
+            cache.put(key, buffer);
+        }
+
+        return buffer;
+    }
+
+    static PaletteBuffer create(List<Palette> palettes, int columns) {
+        PaletteTable[] tables = new PaletteTable[palettes.size()];
+
+        int size = 0;
+
+        for(int i = 0; i < tables.length; ++i) {
+            Palette palette = palettes.get(i);
+            tables[i] = PaletteTable.get(palette, columns, palette.height());
+            size += tables[i].size();
+        }
+
+        float[] data = new float[size];
+        int[] offsets = new int[tables.length];
+        int[] tableColumns = new int[tables.length];
+        int[] tableRows = new int[tables.length];
+
+        int offset = 0;
+
+        for(int i = 0; i < tables.length; ++i) {
+            tables[i].copyTo(data, offset);
+
+            offsets[i] = offset;
+            tableColumns[i] = tables[i].columns;
+            tableRows[i] = tables[i].rows;
+
+            offset += tables[i].size();
+        }
+
+        return new PaletteBuffer(data, offsets, tableColumns, tableRows);
+    }
+
+    /**
+     * The buffer is shared by all fractals with equal palettes,
+     * hence it is read only.
+     */
+    public FloatBuffer data() {
+        return FloatBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public int offset(int index) {
+        return offsets[index];
+    }
+
+    public int columns(int index) {
+        return columns[index];
+    }
+
+    public int rows(int index) {
+        return rows[index];
+    }
+
+    private static class Key {
+        final List<Palette> palettes;
+        final int columns;
+        final int hash;
+
+        Key(List<Palette> palettes, int columns) {
+            // the list of a fractal might be modified later.
+            this.palettes = new ArrayList<>(palettes);
+            this.columns = columns;
+
+            int h = columns;
+
+            for(Palette palette : palettes) {
+                h = h * 31 + ParameterValues.hashCode(palette);
+            }
+
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            if(hash != other.hash || columns != other.columns || palettes.size() != other.palettes.size()) {
+                return false;
+            }
+
+            for(int i = 0; i < palettes.size(); ++i) {
+                if(!ParameterValues.equals(palettes.get(i), other.palettes.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
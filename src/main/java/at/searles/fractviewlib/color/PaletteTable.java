@@ -0,0 +1,213 @@
+package at.searles.fractviewlib.color;
+
+import at.searles.commons.color.Palette;
+import at.searles.fractviewlib.data.ParameterValues;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed interpolation table of a palette in Lab space. Control points
+ * are interpolated using periodic Catmull-Rom splines in both directions.
+ * Table cells are aligned with control points, hence a table with
+ * the same number of rows as the palette contains the palette rows exactly.
+ *
+ * Tables are interned by the content of the palette, therefore equal palettes
+ * in different fractals share the same table. PaletteBuffer additionally
+ * interns the packed tables of a whole list of palettes.
+ */
+public class PaletteTable {
+
+    public static final int DEFAULT_COLUMNS = 4096;
+
+    /**
+     * Number of tables that are kept in the interned cache.
+     */
+    private static final int CACHE_CAPACITY = 64;
+
+    private static final LinkedHashMap<Key, PaletteTable> cache = new LinkedHashMap<Key, PaletteTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, PaletteTable> eldest) {
+            return size() > CACHE_CAPACITY;
+        }
+    };
+
+    public final int columns;
+    public final int rows;
+
+    private final int paletteWidth;
+    private final int paletteHeight;
+
+    /**
+     * 4 floats (L, a, b, alpha) per cell, rows are stored consecutively.
+     */
+    private final float[] lab;
+
+    private PaletteTable(int columns, int rows, int paletteWidth, int paletteHeight, float[] lab) {
+        this.columns = columns;
+        this.rows = rows;
+        this.paletteWidth = paletteWidth;
+        this.paletteHeight = paletteHeight;
+        this.lab = lab;
+    }
+
+    public static PaletteTable get(Palette palette) {
+        return get(palette, DEFAULT_COLUMNS, palette.height());
+    }
+
+    /**
+     * Returns the (possibly shared) table for this palette.
+     */
+    public static synchronized PaletteTable get(Palette palette, int columns, int rows) {
+        Key key = new Key(palette, columns, rows);
+
+        PaletteTable table = cache.get(key);
+
+        if(table == null) {
+            table = create(palette, columns, rows);
+            cache.put(key, table);
+        }
+
+        return table;
+    }
+
+    static PaletteTable create(Palette palette, int columns, int rows) {
+        int width = palette.width();
+        int height = palette.height();
+
+        // Step 1: Convert control points to lab
+        float[] controlPoints = new float[width * height * 4];
+
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                LabColors.int2lab(palette.argb(x, y), controlPoints, (y * width + x) * 4);
+            }
+        }
+
+        // Step 2: Interpolate palette rows horizontally
+        float[] interpolatedRows = new float[height * columns * 4];
+
+        for(int y = 0; y < height; ++y) {
+            for(int u = 0; u < columns; ++u) {
+                double x = (double) u * width / columns;
+                int x1 = (int) x;
+
+                for(int k = 0; k < 4; ++k) {
+                    interpolatedRows[(y * columns + u) * 4 + k] = catmullRom(
+                            controlPoints[(y * width + Math.floorMod(x1 - 1, width)) * 4 + k],
+                            controlPoints[(y * width + x1 % width) * 4 + k],
+                            controlPoints[(y * width + (x1 + 1) % width) * 4 + k],
+                            controlPoints[(y * width + (x1 + 2) % width) * 4 + k],
+                            x - x1);
+                }
+            }
+        }
+
+        // Step 3: Interpolate vertically
+        float[] lab = new float[rows * columns * 4];
+
+        for(int v = 0; v < rows; ++v) {
+            double y = (double) v * height / rows;
+            int y1 = (int) y;
+
+            for(int u = 0; u < columns; ++u) {
+                for(int k = 0; k < 4; ++k) {
+                    lab[(v * columns + u) * 4 + k] = catmullRom(
+                            interpolatedRows[(Math.floorMod(y1 - 1, height) * columns + u) * 4 + k],
+                            interpolatedRows[((y1 % height) * columns + u) * 4 + k],
+                            interpolatedRows[(((y1 + 1) % height) * columns + u) * 4 + k],
+                            interpolatedRows[(((y1 + 2) % height) * columns + u) * 4 + k],
+                            y - y1);
+                }
+            }
+        }
+
+        return new PaletteTable(columns, rows, width, height, lab);
+    }
+
+    private static float catmullRom(float p0, float p1, float p2, float p3, double t) {
+        return (float) (0.5 * (2 * p1 + (p2 - p0) * t
+                + (2 * p0 - 5 * p1 + 4 * p2 - p3) * t * t
+                + (3 * (p1 - p2) + p3 - p0) * t * t * t));
+    }
+
+    /**
+     * Bilinear lookup in the table. x and y are coordinates in the palette
+     * (0 to width/height); values outside are wrapped around.
+     */
+    public void lookup(double x, double y, float[] dst, int offset) {
+        double tx = x * columns / paletteWidth;
+        double ty = y * rows / paletteHeight;
+
+        double fx = Math.floor(tx);
+        double fy = Math.floor(ty);
+
+        int u0 = (int) Math.floorMod((long) fx, (long) columns);
+        int v0 = (int) Math.floorMod((long) fy, (long) rows);
+        int u1 = (u0 + 1) % columns;
+        int v1 = (v0 + 1) % rows;
+
+        double dx = tx - fx;
+        double dy = ty - fy;
+
+        int i00 = (v0 * columns + u0) * 4;
+        int i01 = (v0 * columns + u1) * 4;
+        int i10 = (v1 * columns + u0) * 4;
+        int i11 = (v1 * columns + u1) * 4;
+
+        for(int k = 0; k < 4; ++k) {
+            double top = lab[i00 + k] + (lab[i01 + k] - lab[i00 + k]) * dx;
+            double bottom = lab[i10 + k] + (lab[i11 + k] - lab[i10 + k]) * dx;
+            dst[offset + k] = (float) (top + (bottom - top) * dy);
+        }
+    }
+
+    /**
+     * Number of floats in this table.
+     */
+    public int size() {
+        return lab.length;
+    }
+
+    /**
+     * Copies the table into dst.
+     */
+    public void copyTo(float[] dst, int offset) {
+        System.arraycopy(lab, 0, dst, offset, lab.length);
+    }
+
+    /**
+     * Content of a single palette. Lists of palettes are
+     * interned by PaletteBuffer with a key of its own.
+     */
+    private static class Key {
+        final Palette palette;
+        final int columns;
+        final int rows;
+        final int hash;
+
+        Key(Palette palette, int columns, int rows) {
+            this.palette = palette;
+            this.columns = columns;
+            this.rows = rows;
+            this.hash = (ParameterValues.hashCode(palette) * 31 + columns) * 31 + rows;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) o;
+
+            return hash == other.hash && columns == other.columns && rows == other.rows
+                    && ParameterValues.equals(palette, other.palette);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
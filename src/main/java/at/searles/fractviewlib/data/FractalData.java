@@ -6,10 +6,11 @@ import at.searles.meelan.MeelanException;
 import at.searles.meelan.compiler.Ast;
 import at.searles.meelan.optree.inlined.ExternDeclaration;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.BiConsumer;
 
 public class FractalData implements Iterable<String> {
@@ -17,11 +18,16 @@ public class FractalData implements Iterable<String> {
     // FractalData contains the source code.
 
     private final String source;
-    private final Map<String, Object> parameters;
+
+    // Persistent map, hence copies share all unmodified parameters
+    // with this instance, which keeps long histories cheap.
+    private final PersistentTreeMap<String, Object> parameters;
     private final Map<String, ExternDeclaration> externDecls;
     private final Ast ast;
 
-    private FractalData(String source, Ast ast, Map<String, ExternDeclaration> externDecls, Map<String, Object> parameters) {
+    private int hash; // cached, 0 if not yet computed.
+
+    private FractalData(String source, Ast ast, Map<String, ExternDeclaration> externDecls, PersistentTreeMap<String, Object> parameters) {
         this.source = source;
         this.ast = ast;
         this.externDecls = externDecls;
@@ -30,19 +36,17 @@ public class FractalData implements Iterable<String> {
 
     @Override
     public Iterator<String> iterator() {
-        return parameters.keySet().iterator();
+        return parameters.keyIterator();
     }
 
     public FractalData copyResetParameter(String id) {
         // no need for a builder.
-        if(!parameters.containsKey(id)) {
+        PersistentTreeMap<String, Object> newParameters = parameters.remove(id);
+
+        if(newParameters == parameters) {
             return this;
         }
 
-        Map<String, Object> newParameters = new TreeMap<>();
-        newParameters.putAll(parameters);
-        newParameters.remove(id);
-
         return new FractalData(source, ast, externDecls, newParameters);
     }
 
@@ -53,9 +57,11 @@ public class FractalData implements Iterable<String> {
             return this;
         }
 
-        Map<String, Object> newParameters = new TreeMap<>();
-        newParameters.putAll(parameters);
-        newParameters.put(id, value);
+        PersistentTreeMap<String, Object> newParameters = parameters.put(id, value);
+
+        if(newParameters == parameters) {
+            return this;
+        }
 
         return new FractalData(source, ast, externDecls, newParameters);
     }
@@ -117,6 +123,117 @@ public class FractalData implements Iterable<String> {
         return ast;
     }
 
+    PersistentTreeMap<String, Object> parameters() {
+        return parameters;
+    }
+
+    /**
+     * Shares source code and ast with this instance.
+     */
+    FractalData withParameters(PersistentTreeMap<String, Object> newParameters) {
+        if(newParameters == parameters) {
+            return this;
+        }
+
+        return new FractalData(source, ast, externDecls, newParameters);
+    }
+
+    /**
+     * Parses source. parameters must have been created for this source.
+     */
+    static FractalData create(String source, PersistentTreeMap<String, Object> parameters) throws MeelanException {
+        Builder builder = new Builder().setSource(source);
+        builder.parameters = parameters;
+        return builder.commit();
+    }
+
+    /**
+     * Two instances are equal if they have the same source code and the
+     * same non-default parameters. This allows to use FractalData as key
+     * for caches of rendered content (eg icons).
+     */
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+
+        if(!(o instanceof FractalData)) {
+            return false;
+        }
+
+        FractalData other = (FractalData) o;
+
+        if(source.equals(other.source) && parameters.isSameTree(other.parameters)) {
+            return true;
+        }
+
+        if(hashCode() != other.hashCode() || !source.equals(other.source)
+                || parameters.size() != other.parameters.size()) {
+            return false;
+        }
+
+        for(Map.Entry<String, Object> entry : parameters) {
+            if(!ParameterValues.equals(entry.getValue(), other.parameters.get(entry.getKey()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        // FractalData is immutable, hence the hash code is cached.
+        if(hash == 0) {
+            int h = source.hashCode();
+
+            // independent of order.
+            for(Map.Entry<String, Object> entry : parameters) {
+                h += entry.getKey().hashCode() ^ ParameterValues.hashCode(entry.getValue());
+            }
+
+            hash = h;
+        }
+
+        return hash;
+    }
+
+    /**
+     * SHA-256 of the source code and the non-default parameters in hex.
+     * Equal instances have equal digests. Unlike FractalData, the digest
+     * does not keep the ast alive, hence it is used as key in long-lived
+     * caches.
+     */
+    public String digest() {
+        MessageDigest md;
+
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            // every platform must support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        md.update(source.getBytes(StandardCharsets.UTF_8));
+
+        // entries are sorted by key.
+        for(Map.Entry<String, Object> entry : parameters) {
+            md.update((byte) 0);
+            md.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            ParameterValues.digest(md, entry.getValue());
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for(byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+
+        return sb.toString();
+    }
+
     public static class Builder {
 
         private String source;
@@ -124,7 +241,7 @@ public class FractalData implements Iterable<String> {
         private Map<String, ExternDeclaration> externDecls;
 
         // All parameters in here are non-default.
-        private Map<String, Object> parameters;
+        private PersistentTreeMap<String, Object> parameters;
 
         public Builder setSource(String source) throws MeelanException {
             if(this.source != null) {
@@ -137,7 +254,7 @@ public class FractalData implements Iterable<String> {
 
             this.ast = parser.parseSource(source);
             this.externDecls = parser.getExternDecls();
-            parameters = new LinkedHashMap<>();
+            parameters = PersistentTreeMap.empty();
 
             return this;
         }
@@ -153,7 +270,7 @@ public class FractalData implements Iterable<String> {
             ParameterType type = queryType(id);
 
             if(type.isInstance(value)) {
-                parameters.put(id, value);
+                parameters = parameters.put(id, value);
                 return true;
             }
 
@@ -0,0 +1,377 @@
+package at.searles.fractviewlib.data;
+
+import at.searles.meelan.MeelanException;
+
+import java.util.ArrayList;
+
+/**
+ * Undo/redo history of FractalData with a step and a memory budget.
+ * If a budget is exceeded, the oldest entries are evicted.
+ *
+ * Only the current entry keeps its FractalData (and thus its Ast).
+ * Other entries only keep their parameters (which are structurally shared,
+ * see PersistentTreeMap) and their source code. Consecutive entries with the
+ * same source code share the same string or store an empty delta; changed source
+ * code is stored as a delta to the previous entry with a full copy every
+ * KEYFRAME_INTERVAL deltas. Only the current FractalData holds the latest source.
+ *
+ * Entries can carry an attachment (eg the compiled state of a fractal) that is
+ * dropped together with the entry. Attachments have their own memory budget;
+ * if it is exceeded, attachments of entries far from the current one are
+ * dropped first.
+ */
+public class FractalHistory {
+
+    public static final int DEFAULT_MAX_STEPS = 256;
+    public static final long DEFAULT_MAX_BYTES = 4L << 20;
+    public static final long DEFAULT_MAX_ATTACHMENT_BYTES = 4L << 20;
+
+    private static final int KEYFRAME_INTERVAL = 16;
+
+    /**
+     * Estimated size of an entry without its source, including the
+     * O(log n) new nodes in the parameter map.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final ArrayList<Entry> entries;
+    private int index;
+    private long bytes;
+
+    private int maxSteps;
+    private long maxBytes;
+
+    private long attachmentBytes;
+    private long maxAttachmentBytes;
+
+    private FractalData current;
+
+    public FractalHistory(FractalData data) {
+        this(data, DEFAULT_MAX_STEPS, DEFAULT_MAX_BYTES);
+    }
+
+    public FractalHistory(FractalData data, int maxSteps, long maxBytes) {
+        checkBudget(maxSteps, maxBytes);
+
+        this.entries = new ArrayList<>();
+        this.maxSteps = maxSteps;
+        this.maxBytes = maxBytes;
+        this.maxAttachmentBytes = DEFAULT_MAX_ATTACHMENT_BYTES;
+
+        Entry entry = new Entry(data.parameters(), data.source(), null, 0);
+        entry.cost = cost(entry, null);
+
+        this.entries.add(entry);
+        this.bytes = entry.cost;
+        this.index = 0;
+        this.current = data;
+    }
+
+    /**
+     * Sets the budget and evicts old entries if necessary. The
+     * current entry is never evicted.
+     */
+    public void setBudget(int maxSteps, long maxBytes) {
+        checkBudget(maxSteps, maxBytes);
+
+        this.maxSteps = maxSteps;
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public void setAttachmentBudget(long maxAttachmentBytes) {
+        checkBudget(0, maxAttachmentBytes);
+
+        this.maxAttachmentBytes = maxAttachmentBytes;
+        trimAttachments();
+    }
+
+    private static void checkBudget(int maxSteps, long maxBytes) {
+        if(maxSteps < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+    }
+
+    /**
+     * Attaches attachment to the current entry, replacing a previous one.
+     */
+    public void attach(Attachment attachment) {
+        Entry entry = entries.get(index);
+
+        detach(entry);
+
+        entry.attachment = attachment;
+        attachmentBytes += attachment.bytes();
+
+        trimAttachments();
+    }
+
+    /**
+     * @return the attachment of the current entry or null.
+     */
+    public Attachment attachment() {
+        return entries.get(index).attachment;
+    }
+
+    /**
+     * Estimated memory used by attachments.
+     */
+    public long attachmentBytes() {
+        return attachmentBytes;
+    }
+
+    public FractalData current() {
+        return current;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Estimated memory used by the history (without the current FractalData)
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    public boolean canGoBack() {
+        return index > 0;
+    }
+
+    public boolean canGoForward() {
+        return index < entries.size() - 1;
+    }
+
+    /**
+     * Adds data after the current entry. All entries after the
+     * current one (the redo branch) are discarded.
+     */
+    public void add(FractalData data) {
+        // discard redo branch
+        while(entries.size() > index + 1) {
+            Entry removed = entries.remove(entries.size() - 1);
+            bytes -= removed.cost;
+            detach(removed);
+        }
+
+        Entry previous = entries.get(index);
+        String previousSource = current.source();
+
+        Entry entry;
+
+        if(data.source() == previousSource || data.source().equals(previousSource)) {
+            if(previous.source != null) {
+                entry = new Entry(data.parameters(), previous.source, null, 0);
+            } else {
+                // an empty delta does not add to the work of reconstructing
+                // the source, hence deltaCount is not increased.
+                entry = new Entry(data.parameters(), null, SourceDelta.create(previousSource, previousSource), previous.deltaCount);
+            }
+        } else if(previous.deltaCount + 1 >= KEYFRAME_INTERVAL) {
+            entry = new Entry(data.parameters(), data.source(), null, 0);
+        } else {
+            entry = new Entry(data.parameters(), null, SourceDelta.create(previousSource, data.source()), previous.deltaCount + 1);
+        }
+
+        entry.cost = cost(entry, previous);
+
+        entries.add(entry);
+        bytes += entry.cost;
+        index++;
+
+        current = data;
+
+        evict();
+    }
+
+    /**
+     * @return the previous entry or null if there is none.
+     */
+    public FractalData back() throws MeelanException {
+        if(!canGoBack()) {
+            return null;
+        }
+
+        return moveTo(index - 1);
+    }
+
+    /**
+     * @return the next entry or null if there is none.
+     */
+    public FractalData forward() throws MeelanException {
+        if(!canGoForward()) {
+            return null;
+        }
+
+        return moveTo(index + 1);
+    }
+
+    private FractalData moveTo(int newIndex) {
+        Entry entry = entries.get(newIndex);
+        String source = sourceOf(newIndex);
+
+        FractalData data;
+
+        if(source == current.source() || source.equals(current.source())) {
+            // no need to parse.
+            data = current.withParameters(entry.parameters);
+        } else {
+            data = FractalData.create(source, entry.parameters);
+        }
+
+        index = newIndex;
+        current = data;
+
+        return data;
+    }
+
+    private String sourceOf(int i) {
+        Entry entry = entries.get(i);
+
+        if(entry.source != null) {
+            return entry.source;
+        }
+
+        if(i == index) {
+            return current.source();
+        }
+
+        return entry.delta.apply(sourceOf(i - 1));
+    }
+
+    private void evict() {
+        while(index > 0 && (entries.size() > maxSteps || bytes > maxBytes)) {
+            // the new first entry must not depend on the evicted one.
+            Entry next = entries.get(1);
+
+            if(next.source == null) {
+                next.source = sourceOf(1);
+                next.delta = null;
+            }
+
+            next.deltaCount = 0;
+
+            Entry removed = entries.remove(0);
+            bytes -= removed.cost;
+            detach(removed);
+            index--;
+
+            bytes -= next.cost;
+            next.cost = cost(next, null);
+            bytes += next.cost;
+        }
+    }
+
+    private void detach(Entry entry) {
+        if(entry.attachment != null) {
+            attachmentBytes -= entry.attachment.bytes();
+            entry.attachment = null;
+        }
+    }
+
+    private void trimAttachments() {
+        while(attachmentBytes > maxAttachmentBytes) {
+            // drop the one that is farthest away from the current entry.
+            int farthest = -1;
+
+            for(int i = 0; i < entries.size(); ++i) {
+                if(entries.get(i).attachment != null
+                        && (farthest == -1 || Math.abs(i - index) > Math.abs(farthest - index))) {
+                    farthest = i;
+                }
+            }
+
+            detach(entries.get(farthest));
+        }
+    }
+
+    private static long cost(Entry entry, Entry previous) {
+        if(entry.delta != null) {
+            return ENTRY_OVERHEAD + 2L * entry.delta.replacement.length();
+        }
+
+        if(previous != null && previous.source == entry.source) {
+            // shared string
+            return ENTRY_OVERHEAD;
+        }
+
+        return ENTRY_OVERHEAD + 2L * entry.source.length();
+    }
+
+    private static class Entry {
+        final PersistentTreeMap<String, Object> parameters;
+
+        // exactly one of source and delta is not null.
+        String source;
+        SourceDelta delta;
+
+        // number of deltas since the last full source.
+        int deltaCount;
+
+        long cost;
+
+        Attachment attachment;
+
+        Entry(PersistentTreeMap<String, Object> parameters, String source, SourceDelta delta, int deltaCount) {
+            this.parameters = parameters;
+            this.source = source;
+            this.delta = delta;
+            this.deltaCount = deltaCount;
+        }
+    }
+
+    public interface Attachment {
+        /**
+         * Estimated memory used by this attachment. Must not change.
+         */
+        long bytes();
+    }
+
+    /**
+     * Edits are usually local, hence the delta is the changed
+     * range between the common prefix and the common suffix.
+     */
+    private static class SourceDelta {
+        final int prefix;
+        final int suffix;
+        final String replacement;
+
+        private SourceDelta(int prefix, int suffix, String replacement) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.replacement = replacement;
+        }
+
+        static SourceDelta create(String base, String target) {
+            int max = Math.min(base.length(), target.length());
+
+            int prefix = 0;
+
+            while(prefix < max && base.charAt(prefix) == target.charAt(prefix)) {
+                prefix++;
+            }
+
+            int suffix = 0;
+
+            while(suffix < max - prefix
+                    && base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+                suffix++;
+            }
+
+            return new SourceDelta(prefix, suffix, target.substring(prefix, target.length() - suffix));
+        }
+
+        String apply(String base) {
+            if(replacement.isEmpty() && prefix + suffix == base.length()) {
+                return base;
+            }
+
+            return base.substring(0, prefix) + replacement + base.substring(base.length() - suffix);
+        }
+    }
+}
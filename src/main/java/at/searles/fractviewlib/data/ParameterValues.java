@@ -0,0 +1,177 @@
+package at.searles.fractviewlib.data;
+
+import at.searles.commons.color.Palette;
+import at.searles.commons.math.Cplx;
+import at.searles.commons.math.Scale;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Content-based equality and hash codes for parameter values. Palettes,
+ * scales and complex numbers are compared by their content; numbers
+ * are compared by their double value because json-deserialization
+ * creates BigDecimals while the UI usually sets Integers or Doubles.
+ */
+public class ParameterValues {
+
+    private ParameterValues() {} // do not create instance.
+
+    public static boolean equals(Object a, Object b) {
+        if(a == b) {
+            return true;
+        }
+
+        if(a == null || b == null) {
+            return false;
+        }
+
+        if(a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue()) == 0;
+        }
+
+        if(a instanceof Cplx && b instanceof Cplx) {
+            Cplx c0 = (Cplx) a;
+            Cplx c1 = (Cplx) b;
+
+            return Double.compare(c0.re(), c1.re()) == 0 && Double.compare(c0.im(), c1.im()) == 0;
+        }
+
+        if(a instanceof Scale && b instanceof Scale) {
+            Scale s0 = (Scale) a;
+            Scale s1 = (Scale) b;
+
+            return Double.compare(s0.xx, s1.xx) == 0 && Double.compare(s0.xy, s1.xy) == 0
+                    && Double.compare(s0.yx, s1.yx) == 0 && Double.compare(s0.yy, s1.yy) == 0
+                    && Double.compare(s0.cx, s1.cx) == 0 && Double.compare(s0.cy, s1.cy) == 0;
+        }
+
+        if(a instanceof Palette && b instanceof Palette) {
+            Palette p0 = (Palette) a;
+            Palette p1 = (Palette) b;
+
+            if(p0.width() != p1.width() || p0.height() != p1.height()) {
+                return false;
+            }
+
+            for(int y = 0; y < p0.height(); ++y) {
+                for(int x = 0; x < p0.width(); ++x) {
+                    if(p0.argb(x, y) != p1.argb(x, y)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        return a.equals(b);
+    }
+
+    public static int hashCode(Object value) {
+        if(value == null) {
+            return 0;
+        }
+
+        if(value instanceof Number) {
+            return Double.hashCode(((Number) value).doubleValue());
+        }
+
+        if(value instanceof Cplx) {
+            Cplx c = (Cplx) value;
+            return 31 * Double.hashCode(c.re()) + Double.hashCode(c.im());
+        }
+
+        if(value instanceof Scale) {
+            Scale s = (Scale) value;
+
+            int hash = Double.hashCode(s.xx);
+            hash = 31 * hash + Double.hashCode(s.xy);
+            hash = 31 * hash + Double.hashCode(s.yx);
+            hash = 31 * hash + Double.hashCode(s.yy);
+            hash = 31 * hash + Double.hashCode(s.cx);
+            hash = 31 * hash + Double.hashCode(s.cy);
+
+            return hash;
+        }
+
+        if(value instanceof Palette) {
+            Palette p = (Palette) value;
+
+            int hash = 31 * p.width() + p.height();
+
+            for(int y = 0; y < p.height(); ++y) {
+                for(int x = 0; x < p.width(); ++x) {
+                    hash = 31 * hash + p.argb(x, y);
+                }
+            }
+
+            return hash;
+        }
+
+        return value.hashCode();
+    }
+
+    /**
+     * Adds the content of value to md such that values that are equal
+     * (see equals) add the same bytes.
+     */
+    public static void digest(MessageDigest md, Object value) {
+        if(value == null) {
+            md.update((byte) 0);
+            return;
+        }
+
+        if(value instanceof Number) {
+            md.update((byte) 'n');
+            digest(md, ((Number) value).doubleValue());
+            return;
+        }
+
+        if(value instanceof Cplx) {
+            Cplx c = (Cplx) value;
+
+            md.update((byte) 'c');
+            digest(md, c.re());
+            digest(md, c.im());
+            return;
+        }
+
+        if(value instanceof Scale) {
+            Scale s = (Scale) value;
+
+            md.update((byte) 's');
+
+            for(double d : new double[]{s.xx, s.xy, s.yx, s.yy, s.cx, s.cy}) {
+                digest(md, d);
+            }
+
+            return;
+        }
+
+        if(value instanceof Palette) {
+            Palette p = (Palette) value;
+
+            ByteBuffer buffer = ByteBuffer.allocate(4 * (2 + p.width() * p.height()));
+            buffer.putInt(p.width()).putInt(p.height());
+
+            for(int y = 0; y < p.height(); ++y) {
+                for(int x = 0; x < p.width(); ++x) {
+                    buffer.putInt(p.argb(x, y));
+                }
+            }
+
+            md.update((byte) 'p');
+            md.update(buffer.array());
+            return;
+        }
+
+        md.update((byte) 'o');
+        md.update(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void digest(MessageDigest md, double d) {
+        md.update(ByteBuffer.allocate(8).putDouble(d).array());
+    }
+}
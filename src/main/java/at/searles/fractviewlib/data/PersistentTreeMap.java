@@ -0,0 +1,275 @@
+package at.searles.fractviewlib.data;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable sorted map based on an AVL tree. put and remove return a new map
+ * that shares all but O(log n) nodes with the old one, hence keeping many
+ * versions of a map (eg in the history of a fractal) only costs memory
+ * proportional to the changes.
+ */
+public final class PersistentTreeMap<K extends Comparable<K>, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null);
+
+    private final Node<K, V> root;
+
+    private PersistentTreeMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> PersistentTreeMap<K, V> empty() {
+        return (PersistentTreeMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+
+        while(node != null) {
+            int cmp = key.compareTo(node.key);
+
+            if(cmp == 0) {
+                return node.value;
+            }
+
+            node = cmp < 0 ? node.left : node.right;
+        }
+
+        return null;
+    }
+
+    public boolean containsKey(K key) {
+        Node<K, V> node = root;
+
+        while(node != null) {
+            int cmp = key.compareTo(node.key);
+
+            if(cmp == 0) {
+                return true;
+            }
+
+            node = cmp < 0 ? node.left : node.right;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return a map in which key is mapped to value. If this is already the case,
+     * this map is returned.
+     */
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        Node<K, V> newRoot = put(root, key, value);
+        return newRoot == root ? this : new PersistentTreeMap<>(newRoot);
+    }
+
+    /**
+     * @return a map without key. If key does not exist, this map is returned.
+     */
+    public PersistentTreeMap<K, V> remove(K key) {
+        Node<K, V> newRoot = remove(root, key);
+        return newRoot == root ? this : new PersistentTreeMap<>(newRoot);
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> consumer) {
+        forEach(root, consumer);
+    }
+
+    /**
+     * Iterates over entries in ascending order of keys.
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<Map.Entry<K, V>>() {
+            private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node<K, V> node) {
+                for(; node != null; node = node.left) {
+                    stack.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if(stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                Node<K, V> node = stack.pop();
+                pushLeft(node.right);
+
+                return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+            }
+        };
+    }
+
+    public Iterator<K> keyIterator() {
+        Iterator<Map.Entry<K, V>> entries = iterator();
+
+        return new Iterator<K>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return entries.next().getKey();
+            }
+        };
+    }
+
+    /**
+     * True if both maps share the same tree. This is a cheap check
+     * for maps that were derived from each other without changes.
+     */
+    public boolean isSameTree(PersistentTreeMap<K, V> other) {
+        return root == other.root;
+    }
+
+    // === AVL tree ===
+
+    private static <K extends Comparable<K>, V> void forEach(Node<K, V> node, BiConsumer<? super K, ? super V> consumer) {
+        while(node != null) {
+            forEach(node.left, consumer);
+            consumer.accept(node.key, node.value);
+            node = node.right;
+        }
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> put(Node<K, V> node, K key, V value) {
+        if(node == null) {
+            return new Node<>(key, value, null, null);
+        }
+
+        int cmp = key.compareTo(node.key);
+
+        if(cmp == 0) {
+            return node.value == value ? node : new Node<>(key, value, node.left, node.right);
+        }
+
+        if(cmp < 0) {
+            Node<K, V> left = put(node.left, key, value);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        } else {
+            Node<K, V> right = put(node.right, key, value);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> remove(Node<K, V> node, K key) {
+        if(node == null) {
+            return null;
+        }
+
+        int cmp = key.compareTo(node.key);
+
+        if(cmp < 0) {
+            Node<K, V> left = remove(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+
+        if(cmp > 0) {
+            Node<K, V> right = remove(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+
+        if(node.left == null) {
+            return node.right;
+        }
+
+        if(node.right == null) {
+            return node.left;
+        }
+
+        // replace by smallest node of right subtree.
+        Node<K, V> min = node.right;
+
+        while(min.left != null) {
+            min = min.left;
+        }
+
+        return balance(min.key, min.value, node.left, remove(node.right, min.key));
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int diff = height(left) - height(right);
+
+        if(diff > 1) {
+            if(height(left.left) >= height(left.right)) {
+                // single right rotation
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+
+            // double rotation
+            Node<K, V> lr = left.right;
+            return new Node<>(lr.key, lr.value,
+                    new Node<>(left.key, left.value, left.left, lr.left),
+                    new Node<>(key, value, lr.right, right));
+        }
+
+        if(diff < -1) {
+            if(height(right.right) >= height(right.left)) {
+                // single left rotation
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+
+            // double rotation
+            Node<K, V> rl = right.left;
+            return new Node<>(rl.key, rl.value,
+                    new Node<>(key, value, left, rl.left),
+                    new Node<>(right.key, right.value, rl.right, right.right));
+        }
+
+        return new Node<>(key, value, left, right);
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package at.searles.fractviewlib.entries;
+
+import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.data.ParameterType;
+import at.searles.fractviewlib.io.PngEncoder;
+import at.searles.fractviewlib.render.RenderQueue;
+import at.searles.fractviewlib.render.Renderer;
+import at.searles.meelan.MeelanException;
+import at.searles.meelan.optree.inlined.ExternDeclaration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Regenerates the icons of favorites in bulk. Icons are drawn
+ * with reduced settings (capped maxdepth, no supersampling) and cached by a
+ * digest of the FractalData so that only modified entries are drawn again.
+ * The numeric precision is chosen by the VM of the platform, hence a preview
+ * precision must be set in the renderer that is passed to this class.
+ */
+public class IconGenerator {
+
+    public static final String MAXDEPTH_LABEL = "maxdepth";
+    public static final String SUPERSAMPLING_LABEL = "supersampling";
+
+    public static final int DEFAULT_SIZE = 64;
+    public static final int DEFAULT_MAXDEPTH_CAP = 256;
+
+    /**
+     * Number of icons in the cache. A 64x64 icon is usually a few KB.
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    private final Renderer<int[]> renderer;
+    private final int size;
+    private final int maxDepthCap;
+
+    /**
+     * Least recently used icons by digest of their FractalData.
+     */
+    private final LinkedHashMap<String, byte[]> cache;
+
+    public IconGenerator(Renderer<int[]> renderer) {
+        this(renderer, DEFAULT_SIZE, DEFAULT_MAXDEPTH_CAP);
+    }
+
+    public IconGenerator(Renderer<int[]> renderer, int size, int maxDepthCap) {
+        this(renderer, size, maxDepthCap, DEFAULT_CACHE_CAPACITY);
+    }
+
+    public IconGenerator(Renderer<int[]> renderer, int size, int maxDepthCap, int cacheCapacity) {
+        this.renderer = renderer;
+        this.size = size;
+        this.maxDepthCap = maxDepthCap;
+        this.cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of data with settings that are cheaper to render.
+     * Parameters are only modified if they are declared in the source code.
+     */
+    public FractalData previewData(FractalData data) {
+        FractalData preview = data;
+
+        ExternDeclaration maxDepthDecl = data.externDecls().get(MAXDEPTH_LABEL);
+
+        if(maxDepthDecl != null && data.queryType(MAXDEPTH_LABEL) == ParameterType.Int) {
+            Object maxDepth = data.getValue(MAXDEPTH_LABEL);
+
+            if(maxDepth == null) {
+                maxDepth = declaredValue(maxDepthDecl, ParameterType.Int);
+            }
+
+            if(maxDepth instanceof Number && ((Number) maxDepth).intValue() > maxDepthCap) {
+                preview = preview.copySetParameter(MAXDEPTH_LABEL, maxDepthCap);
+            }
+        }
+
+        if(data.externDecls().containsKey(SUPERSAMPLING_LABEL) && data.queryType(SUPERSAMPLING_LABEL) == ParameterType.Bool) {
+            preview = preview.copySetParameter(SUPERSAMPLING_LABEL, false);
+        }
+
+        return preview;
+    }
+
+    private static Object declaredValue(ExternDeclaration decl, ParameterType type) {
+        try {
+            return type.toValue(decl.value);
+        } catch(MeelanException e) {
+            // not a literal, hence unknown.
+            return null;
+        }
+    }
+
+    /**
+     * Returns the icon of data as PNG, either from the cache or freshly rendered.
+     * @return null if the renderer returned null.
+     */
+    public byte[] icon(FractalData data) {
+        String digest = data.digest();
+        byte[] icon = cached(digest);
+
+        if(icon == null) {
+            icon = renderIcon(digest, Fractal.fromData(previewData(data)));
+        }
+
+        return icon;
+    }
+
+    private byte[] cached(String digest) {
+        synchronized(cache) {
+            return cache.get(digest);
+        }
+    }
+
+    /**
+     * Renders and caches an icon. preview must be compiled in advance
+     * because compilation is not thread safe.
+     */
+    private byte[] renderIcon(String digest, Fractal preview) {
+        int[] argb = renderer.render(preview, size, size);
+
+        if(argb == null) {
+            return null;
+        }
+
+        byte[] icon = PngEncoder.encode(argb, size, size, true);
+
+        synchronized(cache) {
+            cache.put(digest, icon);
+        }
+
+        return icon;
+    }
+
+    /**
+     * Creates a new collection in which icons are set for all entries.
+     * Icons are rendered in parallel using all available cores.
+     * If an icon cannot be created, the old entry is kept because icons
+     * are optional, and the key is reported in the result.
+     *
+     * @param onlyMissing If true, existing icons are kept.
+     */
+    public Result updateIcons(FavoriteEntry.Collection collection, boolean onlyMissing) throws InterruptedException {
+        // entries with equal content are only rendered once.
+        Map<FractalData, String> digests = new HashMap<>();
+        Map<String, byte[]> icons = new HashMap<>();
+        Map<String, Exception> errors = new ConcurrentHashMap<>();
+        List<FractalData> missing = new ArrayList<>();
+
+        for(FavoriteEntry favorite : collection.values()) {
+            if((onlyMissing && favorite.icon != null) || digests.containsKey(favorite.fractal)) {
+                continue;
+            }
+
+            String digest = favorite.fractal.digest();
+            digests.put(favorite.fractal, digest);
+
+            if(!icons.containsKey(digest)) {
+                byte[] icon = cached(digest);
+                icons.put(digest, icon);
+
+                if(icon == null) {
+                    missing.add(favorite.fractal);
+                }
+            }
+        }
+
+        try {
+            RenderQueue.run(missing.size(), index -> {
+                String digest = digests.get(missing.get(index));
+
+                try {
+                    Fractal preview = Fractal.fromData(previewData(missing.get(index)));
+
+                    return () -> {
+                        try {
+                            return renderIcon(digest, preview);
+                        } catch(RuntimeException e) {
+                            errors.put(digest, e);
+                            return null;
+                        }
+                    };
+                } catch(MeelanException e) {
+                    errors.put(digest, e);
+                    return () -> null;
+                }
+            }, (index, icon) -> icons.put(digests.get(missing.get(index)), icon), Runtime.getRuntime().availableProcessors());
+        } catch(ExecutionException e) {
+            // cannot happen because jobs do not throw.
+            throw new IllegalStateException(e.getCause());
+        }
+
+        Result result = new Result();
+
+        for(Map.Entry<String, FavoriteEntry> entry : collection.entrySet()) {
+            FavoriteEntry favorite = entry.getValue();
+
+            if(!(onlyMissing && favorite.icon != null)) {
+                String digest = digests.get(favorite.fractal);
+                byte[] icon = icons.get(digest);
+
+                if(icon != null) {
+                    favorite = new FavoriteEntry(icon, favorite.fractal, favorite.description);
+                } else {
+                    result.failures.put(entry.getKey(), errors.get(digest));
+                }
+            }
+
+            result.collection.put(entry.getKey(), favorite);
+        }
+
+        return result;
+    }
+
+    public int cacheSize() {
+        synchronized(cache) {
+            return cache.size();
+        }
+    }
+
+    public void clearCache() {
+        synchronized(cache) {
+            cache.clear();
+        }
+    }
+
+    public static class Result {
+        /**
+         * The updated collection.
+         */
+        public final FavoriteEntry.Collection collection = new FavoriteEntry.Collection();
+
+        /**
+         * Keys of entries whose icon could not be created in the order of the
+         * collection. The value is the cause or null if the renderer returned null.
+         */
+        public final Map<String, Exception> failures = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,176 @@
+package at.searles.fractviewlib.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ARGB image that is stored in a memory-mapped temporary file instead
+ * of the heap. Since a single mapping is limited to 2GB, the image is
+ * split into bands of rows. Writing to distinct pixels from different
+ * threads is safe.
+ *
+ * The JDK only unmaps a buffer when it is garbage collected. Therefore,
+ * close unmaps the bands explicitly if the runtime allows it (otherwise
+ * they remain mapped until they are collected). The image must not be
+ * used after close.
+ */
+public class MappedImage implements Closeable {
+
+    private static final long MAX_BAND_BYTES = 1L << 30;
+
+    private final int width;
+    private final int height;
+    private final int rowsPerBand;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    private MappedByteBuffer[] mappings;
+    private IntBuffer[] bands;
+
+    private MappedImage(int width, int height, Path file) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.file = file;
+
+        this.rowsPerBand = (int) Math.max(1, MAX_BAND_BYTES / (4L * width));
+
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+        this.mappings = new MappedByteBuffer[bandCount];
+        this.bands = new IntBuffer[bandCount];
+
+        try {
+            for(int i = 0; i < bandCount; ++i) {
+                int rows = Math.min(rowsPerBand, height - i * rowsPerBand);
+                long position = 4L * width * rowsPerBand * i;
+
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, 4L * width * rows);
+                bands[i] = mappings[i].order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        } catch(IOException | RuntimeException e) {
+            // eg out of address space. Release what was mapped so far
+            // so that create can delete the file.
+            for(MappedByteBuffer mapping : mappings) {
+                if(mapping != null) {
+                    unmap(mapping);
+                }
+            }
+
+            try {
+                channel.close();
+            } catch(IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an image in a new temporary file that is deleted on close.
+     */
+    public static MappedImage create(int width, int height) throws IOException {
+        Path file = Files.createTempFile("fractview", ".argb");
+
+        try {
+            return new MappedImage(width, height, file);
+        } catch(IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Copies a tile into the image. argb contains w * h pixels row by row.
+     */
+    public void setPixels(int x, int y, int w, int h, int[] argb) {
+        for(int row = 0; row < h; ++row) {
+            IntBuffer band = bands[(y + row) / rowsPerBand];
+            int offset = ((y + row) % rowsPerBand) * width + x;
+
+            for(int col = 0; col < w; ++col) {
+                band.put(offset + col, argb[row * w + col]);
+            }
+        }
+    }
+
+    public void getRow(int y, int[] argb) {
+        IntBuffer band = bands[y / rowsPerBand];
+        int offset = (y % rowsPerBand) * width;
+
+        for(int x = 0; x < width; ++x) {
+            argb[x] = band.get(offset + x);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(mappings == null) {
+            return;
+        }
+
+        MappedByteBuffer[] mappings = this.mappings;
+
+        this.bands = null;
+        this.mappings = null;
+
+        for(MappedByteBuffer mapping : mappings) {
+            unmap(mapping);
+        }
+
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Releases the mapping without waiting for the garbage collector. Uses
+     * Unsafe.invokeCleaner on Java 9+ and the buffer's cleaner on Java 8.
+     * Does nothing if neither is accessible.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch(NoSuchMethodException e) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+
+                Object cleaner = cleanerMethod.invoke(buffer);
+
+                if(cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch(ReflectiveOperationException | RuntimeException e) {
+            // the mapping is released when the buffer is collected.
+        }
+    }
+}
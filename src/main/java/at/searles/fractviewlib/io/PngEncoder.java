@@ -0,0 +1,401 @@
+package at.searles.fractviewlib.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming PNG encoder for 8-bit RGB(A) images. Rows are pulled from a
+ * RowSource one at a time and compressed data is written in IDAT chunks
+ * as soon as it is available, hence memory does not depend on the height
+ * of the image.
+ *
+ * The parallel variant splits the image into strips of rows that are filtered
+ * and deflated independently. All strips but the last one end with a full flush,
+ * therefore the concatenation is a valid deflate stream. The adler32-checksums
+ * of the strips are combined at the end.
+ */
+public class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    static final int CHUNK_SIZE = 1 << 16;
+
+    public static final int DEFAULT_STRIP_HEIGHT = 64;
+
+    private static final int ADLER_BASE = 65521;
+
+    private final int width;
+    private final int height;
+    private final boolean alpha;
+
+    public PngEncoder(int width, int height, boolean alpha) {
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Convenience method for small images like icons.
+     */
+    public static byte[] encode(int[] argb, int width, int height, boolean alpha) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try {
+            new PngEncoder(width, height, alpha).encode(
+                    (y, row) -> System.arraycopy(argb, y * width, row, 0, width),
+                    Channels.newChannel(out));
+        } catch(IOException e) {
+            // cannot happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+
+        return out.toByteArray();
+    }
+
+    public void encode(RowSource rows, WritableByteChannel channel) throws IOException {
+        writeHeader(channel);
+
+        Deflater deflater = new Deflater();
+
+        try {
+            int[] argb = new int[width];
+            byte[] prev = new byte[rowBytes()];
+            byte[] raw = new byte[rowBytes()];
+            byte[] filtered = new byte[rowBytes() + 1];
+
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int length = 0;
+
+            for(int y = 0; y < height; ++y) {
+                rows.row(y, argb);
+                toBytes(argb, raw);
+                filterRow(raw, prev, filtered);
+
+                deflater.setInput(filtered);
+
+                while(!deflater.needsInput()) {
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+
+                    if(length == buffer.length) {
+                        writeChunk(channel, "IDAT", buffer, length);
+                        length = 0;
+                    }
+                }
+
+                byte[] tmp = prev;
+                prev = raw;
+                raw = tmp;
+            }
+
+            deflater.finish();
+
+            while(!deflater.finished()) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+
+                if(length == buffer.length) {
+                    writeChunk(channel, "IDAT", buffer, length);
+                    length = 0;
+                }
+            }
+
+            if(length > 0) {
+                writeChunk(channel, "IDAT", buffer, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(channel, "IEND", new byte[0], 0);
+    }
+
+    /**
+     * Encodes the image on parallelism threads. Rows are fetched
+     * in the calling thread, at most 2 * parallelism strips are kept
+     * in memory. Chunks are written in order as soon as they are done.
+     */
+    public void encode(RowSource rows, WritableByteChannel channel, int parallelism) throws IOException, InterruptedException {
+        writeHeader(channel);
+
+        // zlib header: deflate, 32K window, default compression.
+        writeChunk(channel, "IDAT", new byte[]{0x78, (byte) 0x9c}, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            ArrayDeque<Future<Strip>> pending = new ArrayDeque<>();
+            byte[] prev = new byte[rowBytes()];
+            int[] argb = new int[width];
+
+            long adler = 1;
+
+            for(int y = 0; y < height || !pending.isEmpty(); ) {
+                if(y < height && pending.size() < 2 * parallelism) {
+                    int stripHeight = Math.min(DEFAULT_STRIP_HEIGHT, height - y);
+
+                    // fetch rows in this thread.
+                    byte[] raw = new byte[stripHeight * rowBytes()];
+
+                    for(int i = 0; i < stripHeight; ++i) {
+                        rows.row(y + i, argb);
+                        toBytes(argb, raw, i * rowBytes());
+                    }
+
+                    byte[] stripPrev = prev;
+                    boolean isLast = y + stripHeight == height;
+
+                    pending.add(executor.submit(() -> compressStrip(raw, stripPrev, stripHeight, isLast)));
+
+                    prev = Arrays.copyOfRange(raw, raw.length - rowBytes(), raw.length);
+                    y += stripHeight;
+                } else {
+                    Strip strip = pending.poll().get();
+
+                    writeChunk(channel, "IDAT", strip.data, strip.length);
+                    adler = combineAdler32(adler, strip.adler32, strip.rawLength);
+                }
+            }
+
+            byte[] checksum = ByteBuffer.allocate(4).putInt((int) adler).array();
+            writeChunk(channel, "IDAT", checksum, 4);
+        } catch(ExecutionException e) {
+            throw new IOException("could not encode strip", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        writeChunk(channel, "IEND", new byte[0], 0);
+    }
+
+    private Strip compressStrip(byte[] raw, byte[] prev, int stripHeight, boolean isLast) {
+        int rowBytes = rowBytes();
+
+        byte[] filtered = new byte[stripHeight * (rowBytes + 1)];
+        byte[] row = new byte[rowBytes];
+        byte[] filteredRow = new byte[rowBytes + 1];
+
+        for(int i = 0; i < stripHeight; ++i) {
+            System.arraycopy(raw, i * rowBytes, row, 0, rowBytes);
+            filterRow(row, prev, filteredRow);
+            System.arraycopy(filteredRow, 0, filtered, i * (rowBytes + 1), rowBytes + 1);
+            prev = Arrays.copyOf(row, rowBytes);
+        }
+
+        Adler32 adler32 = new Adler32();
+        adler32.update(filtered);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        try {
+            deflater.setInput(filtered);
+
+            byte[] data = new byte[Math.max(1024, filtered.length / 2)];
+            int length = 0;
+
+            if(isLast) {
+                deflater.finish();
+            }
+
+            while(true) {
+                if(length == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+
+                int space = data.length - length;
+                int count = isLast
+                        ? deflater.deflate(data, length, space)
+                        : deflater.deflate(data, length, space, Deflater.FULL_FLUSH);
+
+                length += count;
+
+                if(isLast ? deflater.finished() : count < space) {
+                    break;
+                }
+            }
+
+            return new Strip(data, length, adler32.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Same as adler32_combine in zlib.
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - rem;
+
+        if(sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if(sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if(sum2 >= (ADLER_BASE << 1)) sum2 -= (ADLER_BASE << 1);
+        if(sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+
+        return sum1 | (sum2 << 16);
+    }
+
+    void writeHeader(WritableByteChannel channel) throws IOException {
+        writeFully(channel, ByteBuffer.wrap(SIGNATURE));
+
+        ByteBuffer ihdr = ByteBuffer.allocate(13);
+
+        ihdr.putInt(width);
+        ihdr.putInt(height);
+        ihdr.put((byte) 8); // bit depth
+        ihdr.put((byte) (alpha ? 6 : 2)); // color type RGBA or RGB
+        ihdr.put((byte) 0); // compression
+        ihdr.put((byte) 0); // filter
+        ihdr.put((byte) 0); // no interlace
+
+        writeChunk(channel, "IHDR", ihdr.array(), 13);
+    }
+
+    int rowBytes() {
+        return width * (alpha ? 4 : 3);
+    }
+
+    void toBytes(int[] argb, byte[] raw) {
+        toBytes(argb, raw, 0);
+    }
+
+    void toBytes(int[] argb, byte[] raw, int offset) {
+        int index = offset;
+
+        for(int i = 0; i < width; ++i) {
+            int color = argb[i];
+
+            raw[index++] = (byte) (color >> 16);
+            raw[index++] = (byte) (color >> 8);
+            raw[index++] = (byte) color;
+
+            if(alpha) {
+                raw[index++] = (byte) (color >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Applies the filter with the minimum sum of absolute values (the usual
+     * heuristic). The filter type is stored in filtered[0].
+     */
+    void filterRow(byte[] raw, byte[] prev, byte[] filtered) {
+        int bpp = alpha ? 4 : 3;
+
+        int bestType = 0;
+        long bestSum = Long.MAX_VALUE;
+
+        for(int type = 0; type < 5; ++type) {
+            long sum = 0;
+
+            for(int i = 0; i < raw.length; ++i) {
+                sum += Math.abs((byte) filter(type, raw, prev, i, bpp));
+            }
+
+            if(sum < bestSum) {
+                bestSum = sum;
+                bestType = type;
+            }
+        }
+
+        filtered[0] = (byte) bestType;
+
+        for(int i = 0; i < raw.length; ++i) {
+            filtered[i + 1] = (byte) filter(bestType, raw, prev, i, bpp);
+        }
+    }
+
+    private static int filter(int type, byte[] raw, byte[] prev, int i, int bpp) {
+        int x = raw[i] & 0xff;
+        int a = i >= bpp ? raw[i - bpp] & 0xff : 0;
+        int b = prev[i] & 0xff;
+
+        switch(type) {
+            case 0:
+                return x;
+            case 1:
+                return x - a;
+            case 2:
+                return x - b;
+            case 3:
+                return x - ((a + b) >> 1);
+            default:
+                int c = i >= bpp ? prev[i - bpp] & 0xff : 0;
+                return x - paeth(a, b, c);
+        }
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+
+        if(pa <= pb && pa <= pc) {
+            return a;
+        }
+
+        return pb <= pc ? b : c;
+    }
+
+    static void writeChunk(WritableByteChannel channel, String type, byte[] data, int length) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(length + 12);
+
+        chunk.putInt(length);
+
+        for(int i = 0; i < 4; ++i) {
+            chunk.put((byte) type.charAt(i));
+        }
+
+        chunk.put(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(chunk.array(), 4, length + 4);
+
+        chunk.putInt((int) crc.getValue());
+        chunk.flip();
+
+        writeFully(channel, chunk);
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static class Strip {
+        final byte[] data;
+        final int length;
+        final long adler32;
+        final int rawLength;
+
+        Strip(byte[] data, int length, long adler32, int rawLength) {
+            this.data = data;
+            this.length = length;
+            this.adler32 = adler32;
+            this.rawLength = rawLength;
+        }
+    }
+
+    public interface RowSource {
+        /**
+         * Stores row y in argb.
+         */
+        void row(int y, int[] argb) throws IOException;
+    }
+}
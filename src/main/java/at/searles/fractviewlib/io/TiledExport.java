@@ -0,0 +1,99 @@
+package at.searles.fractviewlib.io;
+
+import at.searles.fractviewlib.render.RenderQueue;
+import at.searles.fractviewlib.render.RenderStats;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Export of images that are too large for the heap. The image is rendered
+ * tile by tile into a MappedImage and then encoded row by row as PNG.
+ * Heap usage only depends on the tile size and the width of the image.
+ */
+public class TiledExport {
+
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private final int width;
+    private final int height;
+    private final int tileSize;
+
+    public TiledExport(int width, int height) {
+        this(width, height, DEFAULT_TILE_SIZE);
+    }
+
+    public TiledExport(int width, int height, int tileSize) {
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Renders the image using parallelism threads and writes it as PNG
+     * into out. Progress is reported in steps: First one step per tile,
+     * then one step per encoded row.
+     */
+    public void export(TileRenderer renderer, WritableByteChannel out, int parallelism, ProgressListener listener) throws IOException, InterruptedException {
+        export(renderer, out, parallelism, listener, null);
+    }
+
+    /**
+     * Like export, but the time of each tile is measured and passed to
+     * statsListener once all tiles are rendered, before encoding starts.
+     * @param statsListener may be null.
+     */
+    public void export(TileRenderer renderer, WritableByteChannel out, int parallelism, ProgressListener listener, RenderStats.Listener statsListener) throws IOException, InterruptedException {
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+
+        long totalSteps = (long) tilesX * tilesY + height;
+        AtomicLong steps = new AtomicLong();
+
+        try(MappedImage image = MappedImage.create(width, height)) {
+            try {
+                RenderQueue.run(tilesX * tilesY, index -> {
+                    int x = (index % tilesX) * tileSize;
+                    int y = (index / tilesX) * tileSize;
+                    int w = Math.min(tileSize, width - x);
+                    int h = Math.min(tileSize, height - y);
+
+                    return () -> {
+                        int[] argb = new int[w * h];
+                        renderer.render(x, y, w, h, argb);
+                        image.setPixels(x, y, w, h, argb);
+                        listener.progress(steps.incrementAndGet(), totalSteps);
+                        return null;
+                    };
+                }, (index, tile) -> {}, parallelism, (long) width * height, statsListener);
+            } catch(ExecutionException e) {
+                throw new IOException("could not render tile", e.getCause());
+            }
+
+            new PngEncoder(width, height, true).encode((y, argb) -> {
+                image.getRow(y, argb);
+                listener.progress(steps.incrementAndGet(), totalSteps);
+            }, out, parallelism);
+        }
+    }
+
+    /**
+     * Renders a region of the image, eg by using a Renderer with a scale
+     * that covers only the tile. Called concurrently like a Renderer.
+     */
+    public interface TileRenderer {
+        /**
+         * Stores the pixels of the tile row by row in argb.
+         */
+        void render(int x, int y, int width, int height, int[] argb);
+    }
+
+    public interface ProgressListener {
+        /**
+         * Might be called from different threads.
+         */
+        void progress(long done, long total);
+    }
+}
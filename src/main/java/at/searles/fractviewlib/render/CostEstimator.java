@@ -0,0 +1,120 @@
+package at.searles.fractviewlib.render;
+
+import at.searles.fractviewlib.Fractal;
+
+/**
+ * Predicts time and memory of a render before committing to it, eg to
+ * reject or downscale jobs. The fractal is rendered at a small resolution
+ * with the same scale, hence the sample covers the whole image sparsely.
+ * The time of the sample is then scaled up by the number of pixels.
+ *
+ * Small details that are expensive (eg thin filaments close to the lake)
+ * might be missed by the sample, hence the estimate is rather a lower bound
+ * for images with such details.
+ */
+public class CostEstimator {
+
+    /**
+     * Size of the longer side of the sample.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 64;
+
+    /**
+     * Number of times the sample is rendered to get a confidence interval.
+     */
+    public static final int DEFAULT_SAMPLE_COUNT = 3;
+
+    private final Renderer<?> renderer;
+    private final int sampleSize;
+    private final int sampleCount;
+
+    public CostEstimator(Renderer<?> renderer) {
+        this(renderer, DEFAULT_SAMPLE_SIZE, DEFAULT_SAMPLE_COUNT);
+    }
+
+    public CostEstimator(Renderer<?> renderer, int sampleSize, int sampleCount) {
+        if(sampleSize < 1 || sampleCount < 2) {
+            throw new IllegalArgumentException("sample size must be positive and at least two samples are required");
+        }
+
+        this.renderer = renderer;
+        this.sampleSize = sampleSize;
+        this.sampleCount = sampleCount;
+    }
+
+    /**
+     * Renders the samples in the calling thread.
+     * @param parallelism Number of threads of the full render. A perfect
+     *                    parallel efficiency is assumed (see RenderStats).
+     * @return null if the renderer returned null.
+     */
+    public Estimate estimate(Fractal fractal, int width, int height, int parallelism) {
+        double factor = Math.min(1.0, (double) sampleSize / Math.max(width, height));
+
+        int sampleWidth = Math.max(1, (int) Math.round(width * factor));
+        int sampleHeight = Math.max(1, (int) Math.round(height * factor));
+
+        double scaleUp = (double) width * height / ((double) sampleWidth * sampleHeight) / parallelism;
+
+        double sum = 0;
+        double sumOfSquares = 0;
+
+        for(int i = 0; i < sampleCount; ++i) {
+            long start = System.nanoTime();
+            Object sample = renderer.render(fractal, sampleWidth, sampleHeight);
+            double nanos = (System.nanoTime() - start) * scaleUp;
+
+            if(sample == null) {
+                return null;
+            }
+
+            sum += nanos;
+            sumOfSquares += nanos * nanos;
+        }
+
+        double mean = sum / sampleCount;
+        double variance = Math.max(0, (sumOfSquares - sum * mean) / (sampleCount - 1));
+
+        // 95% for normally distributed times.
+        double margin = 1.96 * Math.sqrt(variance / sampleCount);
+
+        long imageBytes = 4L * width * height;
+
+        // the palette buffer is shared, but the renderer usually copies it.
+        long fractalBytes = 4L * fractal.code().length + 4L * fractal.paletteBuffer().data().capacity();
+
+        return new Estimate((long) mean, (long) Math.max(0, mean - margin), (long) (mean + margin), imageBytes, fractalBytes);
+    }
+
+    public static class Estimate {
+        public final long nanos;
+
+        /**
+         * 95% confidence interval of nanos.
+         */
+        public final long minNanos;
+        public final long maxNanos;
+
+        /**
+         * ARGB pixels, either in the heap or in the file of a
+         * MappedImage (see TiledExport).
+         */
+        public final long imageBytes;
+
+        /**
+         * Code and palette tables that are passed to the renderer.
+         */
+        public final long fractalBytes;
+
+        public final long bytes;
+
+        Estimate(long nanos, long minNanos, long maxNanos, long imageBytes, long fractalBytes) {
+            this.nanos = nanos;
+            this.minNanos = minNanos;
+            this.maxNanos = maxNanos;
+            this.imageBytes = imageBytes;
+            this.fractalBytes = fractalBytes;
+            this.bytes = imageBytes + fractalBytes;
+        }
+    }
+}
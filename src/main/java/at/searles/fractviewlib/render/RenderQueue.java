@@ -0,0 +1,95 @@
+package at.searles.fractviewlib.render;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs jobs on a fixed number of threads and passes the results in order
+ * to a sink. Jobs are created in the calling thread right before they are
+ * submitted because compilation is not thread safe. At most 2 * parallelism
+ * results are pending, hence a slow sink slows down rendering.
+ */
+public class RenderQueue {
+
+    private RenderQueue() {} // do not create instance.
+
+    /**
+     * The sink is called in the calling thread. If a job fails, the
+     * remaining jobs are cancelled.
+     */
+    public static <A> void run(int count, Jobs<A> jobs, Sink<A> sink, int parallelism) throws InterruptedException, ExecutionException {
+        run(count, jobs, sink, parallelism, 0, null);
+    }
+
+    /**
+     * Like run, but the time of each job is measured and reported to
+     * statsListener after all results were delivered.
+     *
+     * @param pixels the number of pixels of all jobs, 0 if unknown.
+     * @param statsListener may be null.
+     */
+    public static <A> void run(int count, Jobs<A> jobs, Sink<A> sink, int parallelism, long pixels, RenderStats.Listener statsListener) throws InterruptedException, ExecutionException {
+        RenderStats.Recorder recorder = statsListener != null ? new RenderStats.Recorder(parallelism) : null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            ArrayDeque<Future<A>> pending = new ArrayDeque<>();
+            int next = 0;
+            int delivered = 0;
+
+            while(delivered < count) {
+                while(next < count && pending.size() < 2 * parallelism) {
+                    Callable<A> job = jobs.create(next++);
+                    pending.add(executor.submit(recorder != null ? timed(job, recorder) : job));
+                }
+
+                sink.accept(delivered++, pending.poll().get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if(recorder != null) {
+            recorder.addPixels(pixels);
+            statsListener.renderFinished(recorder.finish());
+        }
+    }
+
+    private static <A> Callable<A> timed(Callable<A> job, RenderStats.Recorder recorder) {
+        return () -> {
+            long start = System.nanoTime();
+
+            try {
+                return job.call();
+            } finally {
+                recorder.add(System.nanoTime() - start);
+            }
+        };
+    }
+
+    /**
+     * @return the results of all jobs in order.
+     */
+    public static <A> List<A> runAll(int count, Jobs<A> jobs, int parallelism) throws InterruptedException, ExecutionException {
+        List<A> results = new ArrayList<>(count);
+        run(count, jobs, (index, result) -> results.add(result), parallelism);
+        return results;
+    }
+
+    public interface Jobs<A> {
+        /**
+         * Called from the calling thread. The returned job is run on a worker thread.
+         */
+        Callable<A> create(int index);
+    }
+
+    public interface Sink<A> {
+        /**
+         * Called from the calling thread, results are passed in order.
+         */
+        void accept(int index, A result) throws InterruptedException;
+    }
+}
@@ -0,0 +1,332 @@
+package at.searles.fractviewlib.render;
+
+import at.searles.fractviewlib.FractalProvider;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares a fixed number of threads between the fractals of a FractalProvider.
+ * Tiles of the selected fractal are rendered first. All other fractals are
+ * served round robin: A fractal keeps the threads until its tiles used up
+ * a time slice, hence an expensive preview cannot starve the others. Within
+ * a fractal, visible tiles are rendered before hidden ones.
+ *
+ * Tiles of fractals that are removed from the provider are cancelled. Since
+ * ids are not reassigned, tiles that are submitted for a removed fractal
+ * are cancelled right away.
+ *
+ * Whenever all tiles of a fractal are done, the statistics of these tiles
+ * are passed to the StatsListener. Since fractals share the threads, the
+ * parallel efficiency is the share of the threads used by the fractal.
+ */
+public class RenderScheduler implements FractalProvider.Listener {
+
+    public static final long DEFAULT_SLICE_MILLIS = 50;
+
+    private final FractalProvider provider;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final long sliceNanos;
+
+    private final Object lock = new Object();
+
+    private final HashMap<Integer, TileQueue> queues;
+
+    /**
+     * Ids of non-empty queues in round robin order.
+     */
+    private final ArrayDeque<Integer> rotation;
+
+    private final HashSet<Integer> removedIds;
+
+    private int selectedId;
+    private boolean isDisposed;
+
+    private volatile StatsListener statsListener;
+
+    public RenderScheduler(FractalProvider provider, int selectedId, int parallelism) {
+        this(provider, selectedId, parallelism, DEFAULT_SLICE_MILLIS);
+    }
+
+    public RenderScheduler(FractalProvider provider, int selectedId, int parallelism, long sliceMillis) {
+        this.provider = provider;
+        this.selectedId = selectedId;
+        this.sliceNanos = TimeUnit.MILLISECONDS.toNanos(sliceMillis);
+        this.parallelism = parallelism;
+
+        this.queues = new HashMap<>();
+        this.rotation = new ArrayDeque<>();
+        this.removedIds = new HashSet<>();
+
+        this.executor = Executors.newFixedThreadPool(parallelism);
+
+        for(int i = 0; i < parallelism; ++i) {
+            executor.execute(this::work);
+        }
+
+        provider.addListener(this);
+    }
+
+    /**
+     * Unregisters this scheduler from the provider and cancels all tiles.
+     * Must be called on the thread that modifies the provider because
+     * its list of listeners is not synchronized.
+     */
+    public void dispose() {
+        provider.removeListener(this);
+
+        synchronized(lock) {
+            isDisposed = true;
+
+            for(TileQueue queue : queues.values()) {
+                queue.cancel();
+            }
+
+            queues.clear();
+            rotation.clear();
+
+            lock.notifyAll();
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * @param statsListener is called from a worker thread; may be null.
+     */
+    public void setStatsListener(StatsListener statsListener) {
+        this.statsListener = statsListener;
+    }
+
+    public void setSelectedId(int selectedId) {
+        synchronized(lock) {
+            this.selectedId = selectedId;
+        }
+    }
+
+    /**
+     * Adds a tile of the fractal with the given id.
+     * @param visible Visible tiles of a fractal are rendered first.
+     * @return a future to cancel the tile or to wait for it.
+     */
+    public Future<?> submit(int id, Runnable tile, boolean visible) {
+        return submit(id, tile, visible, 0);
+    }
+
+    /**
+     * @param pixels number of pixels of the tile for the statistics.
+     */
+    public Future<?> submit(int id, Runnable tile, boolean visible, long pixels) {
+        synchronized(lock) {
+            if(isDisposed || removedIds.contains(id)) {
+                Tile task = new Tile(id, null, tile, pixels);
+                task.cancel(false);
+                return task;
+            }
+
+            TileQueue queue = queues.get(id);
+
+            if(queue == null) {
+                queue = new TileQueue();
+                queues.put(id, queue);
+            }
+
+            if(queue.recorder == null) {
+                queue.recorder = new RenderStats.Recorder(parallelism);
+            }
+
+            Tile task = new Tile(id, queue, tile, pixels);
+
+            (visible ? queue.visible : queue.hidden).add(task);
+
+            if(!queue.isInRotation) {
+                queue.isInRotation = true;
+                rotation.add(id);
+            }
+
+            lock.notify();
+
+            return task;
+        }
+    }
+
+    /**
+     * Cancels all pending and running tiles of a fractal, eg
+     * because it was modified.
+     */
+    public void cancel(int id) {
+        synchronized(lock) {
+            TileQueue queue = queues.remove(id);
+
+            if(queue != null) {
+                queue.cancel();
+                rotation.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public void parameterMapUpdated(FractalProvider src) {
+        // only removals are of interest.
+    }
+
+    @Override
+    public void parameterMapUpdated(FractalProvider src, FractalProvider.Change change) {
+        synchronized(lock) {
+            for(int id : change.removedFractals) {
+                removedIds.add(id);
+                cancel(id);
+            }
+        }
+    }
+
+    private void work() {
+        while(true) {
+            Tile tile;
+
+            synchronized(lock) {
+                while((tile = poll()) == null) {
+                    if(isDisposed) {
+                        return;
+                    }
+
+                    try {
+                        lock.wait();
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+
+            long start = System.nanoTime();
+            tile.run();
+            long duration = System.nanoTime() - start;
+
+            // clear the interrupt of a cancelled tile.
+            Thread.interrupted();
+
+            RenderStats stats = null;
+
+            synchronized(lock) {
+                // after cancel(id), a new queue might exist for the same id.
+                if(queues.get(tile.id) == tile.queue) {
+                    TileQueue queue = tile.queue;
+
+                    queue.running.remove(tile);
+                    queue.usedNanos += duration;
+
+                    queue.recorder.add(duration);
+                    queue.recorder.addPixels(tile.pixels);
+
+                    if(queue.isEmpty() && queue.running.isEmpty()) {
+                        stats = queue.recorder.finish();
+                        queue.recorder = null;
+                    }
+                }
+            }
+
+            StatsListener listener = statsListener;
+
+            if(stats != null && listener != null) {
+                listener.tilesFinished(tile.id, stats);
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock.
+     * @return the next tile or null if there is none.
+     */
+    private Tile poll() {
+        if(isDisposed) {
+            return null;
+        }
+
+        TileQueue selected = queues.get(selectedId);
+
+        if(selected != null && !selected.isEmpty()) {
+            return selected.poll();
+        }
+
+        while(!rotation.isEmpty()) {
+            int id = rotation.peek();
+            TileQueue queue = queues.get(id);
+
+            if(queue.isEmpty()) {
+                queue.isInRotation = false;
+                rotation.poll();
+            } else if(queue.usedNanos >= sliceNanos) {
+                // next turn
+                queue.usedNanos = 0;
+                rotation.add(rotation.poll());
+            } else {
+                return queue.poll();
+            }
+        }
+
+        return null;
+    }
+
+    private static class Tile extends FutureTask<Void> {
+        final int id;
+        final TileQueue queue;
+        final long pixels;
+
+        Tile(int id, TileQueue queue, Runnable tile, long pixels) {
+            super(tile, null);
+            this.id = id;
+            this.queue = queue;
+            this.pixels = pixels;
+        }
+    }
+
+    private static class TileQueue {
+        final ArrayDeque<Tile> visible = new ArrayDeque<>();
+        final ArrayDeque<Tile> hidden = new ArrayDeque<>();
+        final HashSet<Tile> running = new HashSet<>();
+
+        // time used in the current slice.
+        long usedNanos;
+
+        // times of tiles since the queue was last empty.
+        RenderStats.Recorder recorder;
+
+        boolean isInRotation;
+
+        boolean isEmpty() {
+            return visible.isEmpty() && hidden.isEmpty();
+        }
+
+        Tile poll() {
+            Tile tile = !visible.isEmpty() ? visible.poll() : hidden.poll();
+            running.add(tile);
+            return tile;
+        }
+
+        void cancel() {
+            for(Tile tile : visible) {
+                tile.cancel(false);
+            }
+
+            for(Tile tile : hidden) {
+                tile.cancel(false);
+            }
+
+            for(Tile tile : running) {
+                tile.cancel(true);
+            }
+        }
+    }
+
+    public interface StatsListener {
+        /**
+         * Called when all tiles of the fractal with the given id are done.
+         */
+        void tilesFinished(int id, RenderStats stats);
+    }
+}
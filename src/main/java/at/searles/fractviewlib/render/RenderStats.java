@@ -0,0 +1,114 @@
+package at.searles.fractviewlib.render;
+
+import java.util.Arrays;
+
+/**
+ * Timing of a render that consists of several jobs (tiles, frames, icons).
+ * All fields are plain values, hence it can be logged as JSON using
+ * Serializers.serializer().toJson(stats).
+ *
+ * The number of iterations per pixel is not included because the code is
+ * executed by the VM of the platform.
+ */
+public class RenderStats {
+
+    /**
+     * Number of threads that were available for the jobs.
+     */
+    public final int parallelism;
+
+    /**
+     * Time from the first job until all jobs were done.
+     */
+    public final long wallNanos;
+
+    /**
+     * Time of each job in the order in which they finished.
+     */
+    public final long[] jobNanos;
+
+    /**
+     * Sum of jobNanos.
+     */
+    public final long busyNanos;
+
+    /**
+     * Number of rendered pixels or 0 if it is unknown.
+     */
+    public final long pixels;
+
+    public final double pixelsPerSecond;
+    public final double pixelsPerSecondPerWorker;
+
+    /**
+     * busyNanos / (wallNanos * parallelism). 1 if all threads were busy
+     * all the time.
+     */
+    public final double parallelEfficiency;
+
+    RenderStats(int parallelism, long wallNanos, long[] jobNanos, long pixels) {
+        this.parallelism = parallelism;
+        this.wallNanos = wallNanos;
+        this.jobNanos = jobNanos;
+        this.pixels = pixels;
+
+        long busyNanos = 0;
+
+        for(long nanos : jobNanos) {
+            busyNanos += nanos;
+        }
+
+        this.busyNanos = busyNanos;
+
+        this.pixelsPerSecond = wallNanos > 0 ? pixels * 1e9 / wallNanos : 0;
+        this.pixelsPerSecondPerWorker = pixelsPerSecond / parallelism;
+        this.parallelEfficiency = wallNanos > 0 ? (double) busyNanos / ((double) wallNanos * parallelism) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d jobs in %.1f ms, %.0f pixels/s, efficiency %.2f",
+                jobNanos.length, wallNanos / 1e6, pixelsPerSecond, parallelEfficiency);
+    }
+
+    public interface Listener {
+        /**
+         * Called after all jobs of a render are done.
+         */
+        void renderFinished(RenderStats stats);
+    }
+
+    /**
+     * Collects the times of jobs. Jobs may finish on any thread.
+     */
+    static class Recorder {
+        private final int parallelism;
+        private final long startNanos;
+
+        private long[] jobNanos;
+        private int jobCount;
+        private long pixels;
+
+        Recorder(int parallelism) {
+            this.parallelism = parallelism;
+            this.startNanos = System.nanoTime();
+            this.jobNanos = new long[16];
+        }
+
+        synchronized void add(long nanos) {
+            if(jobCount == jobNanos.length) {
+                jobNanos = Arrays.copyOf(jobNanos, 2 * jobCount);
+            }
+
+            jobNanos[jobCount++] = nanos;
+        }
+
+        synchronized void addPixels(long pixels) {
+            this.pixels += pixels;
+        }
+
+        synchronized RenderStats finish() {
+            return new RenderStats(parallelism, System.nanoTime() - startNanos, Arrays.copyOf(jobNanos, jobCount), pixels);
+        }
+    }
+}
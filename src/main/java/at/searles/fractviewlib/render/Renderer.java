@@ -0,0 +1,17 @@
+package at.searles.fractviewlib.render;
+
+import at.searles.fractviewlib.Fractal;
+
+/**
+ * Draws a fractal. This library does not contain a VM, hence renderers are
+ * provided by the platform. They are called from several threads at once
+ * (see RenderQueue) and therefore must be thread safe.
+ *
+ * @param <A> The result, eg ARGB pixels or a platform bitmap.
+ */
+public interface Renderer<A> {
+    /**
+     * @return the image or null if it could not be rendered.
+     */
+    A render(Fractal fractal, int width, int height);
+}
@@ -0,0 +1,60 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.render.CostEstimator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class CostEstimatorTest {
+
+    private final Fractal fractal = Fractal.fromData(new FractalData.Builder().setSource("var x = 0;").commit());
+
+    @Test
+    public void testSampleKeepsAspectRatio() {
+        List<String> sizes = Collections.synchronizedList(new ArrayList<>());
+
+        CostEstimator estimator = new CostEstimator((fractal, width, height) -> {
+            sizes.add(width + "x" + height);
+            return new int[width * height];
+        });
+
+        CostEstimator.Estimate estimate = estimator.estimate(fractal, 1024, 512, 4);
+
+        Assert.assertEquals(Collections.nCopies(CostEstimator.DEFAULT_SAMPLE_COUNT, "64x32"), sizes);
+
+        Assert.assertTrue(estimate.minNanos <= estimate.nanos);
+        Assert.assertTrue(estimate.nanos <= estimate.maxNanos);
+
+        Assert.assertEquals(4L * 1024 * 512, estimate.imageBytes);
+        Assert.assertEquals(estimate.imageBytes + estimate.fractalBytes, estimate.bytes);
+    }
+
+    @Test
+    public void testTimeIsScaledUp() {
+        // about 1 ms per 100 pixels.
+        CostEstimator estimator = new CostEstimator((fractal, width, height) -> {
+            long end = System.nanoTime() + width * height * 10_000L;
+
+            while(System.nanoTime() < end) {
+                Thread.yield();
+            }
+
+            return new int[width * height];
+        }, 10, 2);
+
+        CostEstimator.Estimate estimate = estimator.estimate(fractal, 100, 100, 2);
+
+        // 100 ms for 10000 pixels on 2 threads.
+        Assert.assertTrue(estimate.nanos >= 50_000_000L);
+    }
+
+    @Test
+    public void testRendererFailure() {
+        Assert.assertNull(new CostEstimator((fractal, width, height) -> null).estimate(fractal, 100, 100, 1));
+    }
+}
@@ -0,0 +1,77 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.commons.math.Scale;
+import at.searles.fractviewlib.animation.ExpMapZoom;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+public class ExpMapZoomTest {
+
+    private static final Scale SCALE = new Scale(2, 0, 0, 2, -0.5, 0.25);
+
+    /**
+     * Smooth test image that only depends on the distance to the center.
+     */
+    private static int gray(double x, double y) {
+        double r = Math.hypot(x - SCALE.cx, y - SCALE.cy);
+        int g = (int) (128 + 100 * Math.sin(Math.log(r) * 2));
+        return 0xff000000 | g << 16 | g << 8 | g;
+    }
+
+    @Test
+    public void testFramesMatchDirectRendering() throws InterruptedException, ExecutionException {
+        int width = 64, height = 48;
+
+        ExpMapZoom zoom = new ExpMapZoom(SCALE, 1000, width, height, 512);
+
+        int[] strip = zoom.renderStrip(ExpMapZoomTest::gray, 4);
+
+        int[] frame = new int[width * height];
+
+        for(int i = 0; i < 5; ++i) {
+            double z = zoom.zoomOfFrame(i, 5);
+            zoom.frame(z, strip, frame);
+
+            // compare a pixel that is not too close to the center
+            int px = 5, py = 7;
+            double x = (2 * px + 1 - width) / (double) height;
+            double y = (2 * py + 1 - height) / (double) height;
+
+            int expected = gray(SCALE.cx + SCALE.xx * x / z, SCALE.cy + SCALE.yy * y / z);
+
+            Assert.assertEquals(expected & 0xff, frame[py * width + px] & 0xff, 4);
+        }
+    }
+
+    @Test
+    public void testRenderStripUsesStripPoints() throws InterruptedException, ExecutionException {
+        ExpMapZoom zoom = new ExpMapZoom(SCALE, 100, 64, 48, 128);
+
+        int[] strip = zoom.renderStrip(ExpMapZoomTest::gray, 3);
+
+        Assert.assertEquals(zoom.stripWidth() * zoom.stripHeight(), strip.length);
+
+        double[] pt = new double[2];
+
+        for(int v = 0; v < zoom.stripHeight(); ++v) {
+            for(int u = 0; u < zoom.stripWidth(); ++u) {
+                zoom.stripPoint(u, v, pt);
+                Assert.assertEquals(gray(pt[0], pt[1]), strip[v * zoom.stripWidth() + u]);
+            }
+        }
+    }
+
+    @Test
+    public void testStripCoversFirstFrame() {
+        ExpMapZoom zoom = new ExpMapZoom(SCALE, 10, 64, 48, 256);
+
+        double[] pt = new double[2];
+        zoom.stripPoint(0, zoom.stripHeight() - 1, pt);
+
+        double cornerRadius = Math.hypot(2 * 64. / 48., 2);
+
+        Assert.assertEquals(cornerRadius, Math.hypot(pt[0] - SCALE.cx, pt[1] - SCALE.cy), 1e-9);
+    }
+}
@@ -0,0 +1,73 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.color.FastLabColors;
+import at.searles.fractviewlib.color.LabColors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FastLabColorsTest {
+
+    @Test
+    public void testLab2IntErrorBound() {
+        float[] lab = new float[4];
+
+        for(float l = 0; l <= 100; l += 0.5f) {
+            for(float a = -128; a <= 127; a += 1.5f) {
+                for(float b = -128; b <= 127; b += 1.5f) {
+                    lab[0] = l;
+                    lab[1] = a;
+                    lab[2] = b;
+                    lab[3] = 1;
+
+                    int exact = LabColors.lab2int(lab, 0);
+                    int fast = FastLabColors.lab2int(lab, 0);
+
+                    for(int shift = 0; shift < 32; shift += 8) {
+                        int diff = Math.abs(((exact >> shift) & 0xff) - ((fast >> shift) & 0xff));
+                        Assert.assertTrue(l + ", " + a + ", " + b, diff <= 1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInt2LabErrorBound() {
+        float[] exact = new float[4];
+        float[] fast = new float[4];
+
+        for(int r = 0; r < 256; r += 3) {
+            for(int g = 0; g < 256; g += 3) {
+                for(int b = 0; b < 256; b += 3) {
+                    int argb = 0xff000000 | r << 16 | g << 8 | b;
+
+                    LabColors.int2lab(argb, exact, 0);
+                    FastLabColors.int2lab(argb, fast, 0);
+
+                    for(int k = 0; k < 4; ++k) {
+                        Assert.assertEquals(exact[k], fast[k], 0.01);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelBulkConversion() {
+        int count = 100000;
+
+        float[] lab = new float[4 * count];
+
+        for(int i = 0; i < count; ++i) {
+            FastLabColors.int2lab(i * 167, lab, 4 * i);
+        }
+
+        int[] sequential = new int[count];
+        int[] parallel = new int[count];
+
+        FastLabColors.lab2int(lab, 0, sequential, 0, count);
+        FastLabColors.lab2intParallel(lab, parallel);
+
+        Assert.assertArrayEquals(sequential, parallel);
+    }
+}
@@ -0,0 +1,197 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.data.FractalHistory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FractalHistoryTest {
+
+    private static final String SOURCE = "extern a int = 1; var x = a;";
+
+    private static FractalData data(String source) {
+        return new FractalData.Builder().setSource(source).commit();
+    }
+
+    @Test
+    public void testRedoBranchIsTruncated() {
+        FractalData d0 = data(SOURCE);
+        FractalHistory history = new FractalHistory(d0);
+
+        history.add(d0.copySetParameter("a", 2));
+        history.add(d0.copySetParameter("a", 3));
+
+        history.back();
+        history.back();
+
+        history.add(d0.copySetParameter("a", 4));
+
+        Assert.assertEquals(2, history.size());
+        Assert.assertFalse(history.canGoForward());
+        Assert.assertEquals(4, history.current().getValue("a"));
+
+        Assert.assertNull(history.back().getValue("a"));
+    }
+
+    @Test
+    public void testStepBudgetEvictsOldest() {
+        FractalData d0 = data(SOURCE);
+        FractalHistory history = new FractalHistory(d0, 3, Long.MAX_VALUE);
+
+        for(int i = 2; i < 10; ++i) {
+            history.add(d0.copySetParameter("a", i));
+        }
+
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(8, history.back().getValue("a"));
+        Assert.assertEquals(7, history.back().getValue("a"));
+        Assert.assertNull(history.back());
+    }
+
+    @Test
+    public void testSourceDeltas() {
+        FractalHistory history = new FractalHistory(data("var x = 0;"));
+
+        for(int i = 1; i < 40; ++i) {
+            history.add(data("var x = " + i + ";"));
+        }
+
+        for(int i = 38; i >= 0; --i) {
+            Assert.assertEquals("var x = " + i + ";", history.back().source());
+        }
+
+        for(int i = 1; i < 40; ++i) {
+            Assert.assertEquals("var x = " + i + ";", history.forward().source());
+        }
+    }
+
+    @Test
+    public void testMemoryBudgetEvictsOldest() {
+        StringBuilder sb = new StringBuilder("var x = 0;");
+
+        for(int i = 0; i < 1000; ++i) {
+            sb.append(" var y").append(i).append(" = ").append(i).append(";");
+        }
+
+        FractalHistory history = new FractalHistory(data(sb.toString()), 1000, 128 * 1024);
+
+        for(int i = 0; i < 200; ++i) {
+            // new keyframes every few steps
+            sb.append(" var z").append(i).append(" = ").append(i).append(";");
+            history.add(data(sb.toString()));
+            Assert.assertTrue(history.bytes() <= 128 * 1024);
+        }
+
+        // an older entry can still be reconstructed.
+        String current = history.current().source();
+        Assert.assertTrue(current.startsWith(history.back().source()));
+    }
+
+    @Test
+    public void testParameterStepsAfterSourceDeltasStoreNoSource() {
+        StringBuilder sb = new StringBuilder(SOURCE);
+
+        for(int i = 0; i < 1000; ++i) {
+            sb.append(" var y").append(i).append(" = ").append(i).append(";");
+        }
+
+        FractalData data = data(sb.toString());
+        FractalHistory history = new FractalHistory(data);
+
+        long sourceBytes = 2L * data.source().length();
+
+        // fewer source changes than a keyframe interval.
+        for(int i = 0; i < 10; ++i) {
+            long bytes = history.bytes();
+
+            data = data.copySetSource(data.source() + " var z" + i + " = " + i + ";");
+            history.add(data);
+
+            Assert.assertTrue(history.bytes() - bytes < sourceBytes / 10);
+
+            bytes = history.bytes();
+
+            data = data.copySetParameter("a", i);
+            history.add(data);
+
+            Assert.assertTrue(history.bytes() - bytes < sourceBytes / 10);
+        }
+
+        for(int i = 9; i >= 0; --i) {
+            FractalData sourceStep = history.back();
+            Assert.assertTrue(sourceStep.source().endsWith(" var z" + i + " = " + i + ";"));
+
+            FractalData parameterStep = history.back();
+            Assert.assertTrue(sourceStep.source().startsWith(parameterStep.source()));
+            Assert.assertEquals(i == 0 ? null : (Object) (i - 1), parameterStep.getValue("a"));
+        }
+    }
+
+    @Test
+    public void testNegativeBudgetsAreRejected() {
+        FractalHistory history = new FractalHistory(data(SOURCE));
+
+        try {
+            history.setBudget(10, -1);
+            Assert.fail();
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            history.setAttachmentBudget(-1);
+            Assert.fail();
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAttachmentsAreDroppedWithEntries() {
+        FractalData d0 = data(SOURCE);
+        FractalHistory history = new FractalHistory(d0, 3, Long.MAX_VALUE);
+
+        FractalHistory.Attachment attachment = () -> 100;
+
+        history.attach(attachment);
+        history.add(d0.copySetParameter("a", 2));
+        history.attach(attachment);
+        history.add(d0.copySetParameter("a", 3));
+
+        Assert.assertEquals(200, history.attachmentBytes());
+
+        history.back();
+        Assert.assertSame(attachment, history.attachment());
+
+        // truncates the redo branch, then evicts the first entries.
+        history.add(d0.copySetParameter("a", 4));
+        Assert.assertEquals(200, history.attachmentBytes());
+
+        history.add(d0.copySetParameter("a", 5));
+        Assert.assertEquals(100, history.attachmentBytes());
+
+        history.add(d0.copySetParameter("a", 6));
+        Assert.assertEquals(0, history.attachmentBytes());
+    }
+
+    @Test
+    public void testAttachmentBudgetKeepsNearestEntries() {
+        FractalData d0 = data(SOURCE);
+        FractalHistory history = new FractalHistory(d0);
+        history.setAttachmentBudget(250);
+
+        for(int i = 2; i < 6; ++i) {
+            history.attach(() -> 100);
+            history.add(d0.copySetParameter("a", i));
+        }
+
+        Assert.assertEquals(200, history.attachmentBytes());
+
+        history.back();
+        Assert.assertNotNull(history.attachment());
+        history.back();
+        Assert.assertNotNull(history.attachment());
+        history.back();
+        Assert.assertNull(history.attachment());
+    }
+}
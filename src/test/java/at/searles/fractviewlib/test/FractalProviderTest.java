@@ -10,6 +10,8 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 
@@ -305,4 +307,49 @@ public class FractalProviderTest {
         this.table = provider.createTable(selectedId);
     }
 
+    @Test
+    public void testChangeEvents() {
+        withSources("extern a int = 0; extern b int = 1; var d = a + b",
+                "extern a int = 0; var d = a");
+
+        withProvider("b");
+
+        List<FractalProvider.Change> changes = new ArrayList<>();
+
+        provider.addListener(new FractalProvider.Listener() {
+            @Override
+            public void parameterMapUpdated(FractalProvider src) {
+                Assert.fail("should not be called");
+            }
+
+            @Override
+            public void parameterMapUpdated(FractalProvider src, FractalProvider.Change change) {
+                changes.add(change);
+            }
+        });
+
+        provider.setParameterValue("b", ids.get(0), 9);
+
+        FractalProvider.Change change = changes.get(0);
+
+        Assert.assertEquals(Collections.singleton(ids.get(0)), change.affectedFractals());
+
+        Fractal.Change fractalChange = change.modifiedFractals.get(ids.get(0));
+
+        Assert.assertTrue(fractalChange.codeChanged);
+        Assert.assertFalse(fractalChange.palettesChanged);
+        Assert.assertFalse(fractalChange.scaleChanged);
+        Assert.assertEquals(Collections.singleton("b"), fractalChange.changedKeys());
+        Assert.assertEquals(1, ((Number) fractalChange.oldValues.get("b")).intValue());
+        Assert.assertEquals(9, ((Number) fractalChange.newValues.get("b")).intValue());
+
+        provider.setParameterValue("a", -1, 5);
+
+        Assert.assertEquals(new HashSet<>(ids), changes.get(1).affectedFractals());
+
+        provider.removeFractal(ids.get(1));
+
+        Assert.assertEquals(Collections.singleton(ids.get(1)), changes.get(2).removedFractals);
+        Assert.assertTrue(changes.get(2).modifiedFractals.isEmpty());
+    }
 }
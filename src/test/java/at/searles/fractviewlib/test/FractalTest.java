@@ -1,12 +1,17 @@
 package at.searles.fractviewlib.test;
 
 import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.FractalProvider;
+import at.searles.fractviewlib.ParameterAtlas;
 import at.searles.fractviewlib.data.FractalData;
 import at.searles.fractviewlib.data.ParameterType;
 import at.searles.commons.math.Scale;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Tests for the central fractal class
  */
@@ -91,4 +96,54 @@ public class FractalTest {
 
         Assert.assertTrue(5. == scale.xx);
     }
+
+    @Test
+    public void testDeriveRecompiles() {
+        Fractal fractal = fromSource("extern a int = 1; var x = a;");
+
+        Fractal variant = fractal.derive("a", 3);
+
+        Assert.assertEquals(1, fractal.code()[1]);
+        Assert.assertEquals(3, variant.code()[1]);
+    }
+
+    @Test
+    public void testDeriveScaleSharesCode() {
+        Fractal fractal = fromSource("extern a int = 1; var x = a;");
+
+        Fractal variant = fractal.derive(Fractal.SCALE_LABEL, new Scale(1, 0, 0, 1, 0, 0));
+
+        Assert.assertSame(fractal.code(), variant.code());
+        Assert.assertTrue(1. == variant.scale().xx);
+        Assert.assertTrue(2. == fractal.scale().xx);
+    }
+
+    @Test
+    public void testParameterAtlas() throws Exception {
+        Fractal fractal = fromSource("extern a int = 1; var x = a;");
+
+        List<Integer> results = ParameterAtlas.render(fractal, "a", Arrays.asList(2, 3, 4),
+                (variant, width, height) -> variant.code()[1], 16, 16, 2);
+
+        Assert.assertEquals(Arrays.asList(2, 3, 4), results);
+    }
+
+    @Test
+    public void testUndoRedoDoesNotRecompile() {
+        FractalProvider provider = new FractalProvider();
+        int id = provider.addFractal(new FractalData.Builder().setSource("extern a int = 1; var x = a;").commit());
+        Fractal fractal = provider.getFractal(id);
+
+        int[] code1 = fractal.code();
+
+        fractal.setValue("a", 2);
+        int[] code2 = fractal.code();
+
+        Assert.assertTrue(provider.historyBack(id));
+        Assert.assertSame(code1, fractal.code());
+
+        Assert.assertTrue(provider.historyForward(id));
+        Assert.assertSame(code2, fractal.code());
+        Assert.assertEquals(2, fractal.code()[1]);
+    }
 }
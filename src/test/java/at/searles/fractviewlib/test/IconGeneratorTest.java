@@ -0,0 +1,123 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.entries.FavoriteEntry;
+import at.searles.fractviewlib.entries.IconGenerator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IconGeneratorTest {
+
+    private static final String SOURCE = "extern maxdepth int = 1000; extern supersampling bool = true; var x = maxdepth;";
+
+    private AtomicInteger renderCount;
+    private IconGenerator generator;
+
+    @Before
+    public void setUp() {
+        renderCount = new AtomicInteger();
+        generator = new IconGenerator((data, width, height) -> {
+            renderCount.incrementAndGet();
+            return new int[width * height];
+        }, 16, 100);
+    }
+
+    @Test
+    public void testPreviewDataIsCapped() {
+        FractalData data = new FractalData.Builder().setSource(SOURCE).commit();
+
+        FractalData preview = generator.previewData(data);
+
+        Assert.assertEquals(100, ((Number) preview.getValue("maxdepth")).intValue());
+        Assert.assertEquals(false, preview.getValue("supersampling"));
+    }
+
+    @Test
+    public void testSmallMaxDepthIsKept() {
+        FractalData.Builder builder = new FractalData.Builder().setSource(SOURCE);
+        builder.addParameter("maxdepth", 50);
+
+        FractalData preview = generator.previewData(builder.commit());
+
+        Assert.assertEquals(50, ((Number) preview.getValue("maxdepth")).intValue());
+    }
+
+    @Test
+    public void testOnlyChangedEntriesAreRendered() throws InterruptedException {
+        FavoriteEntry.Collection collection = new FavoriteEntry.Collection();
+
+        collection.put("a", new FavoriteEntry(null, new FractalData.Builder().setSource(SOURCE).commit(), null));
+        collection.put("b", new FavoriteEntry(null, new FractalData.Builder().setSource(SOURCE).commit(), null));
+
+        FavoriteEntry.Collection updated = generator.updateIcons(collection, false).collection;
+
+        // both entries have the same content
+        Assert.assertEquals(1, renderCount.get());
+        Assert.assertNotNull(updated.get("a").icon);
+        Assert.assertSame(updated.get("a").icon, updated.get("b").icon);
+
+        FractalData.Builder builder = new FractalData.Builder().setSource(SOURCE);
+        builder.addParameter("maxdepth", 50);
+        updated.put("b", new FavoriteEntry(null, builder.commit(), null));
+
+        generator.updateIcons(updated, false);
+
+        Assert.assertEquals(2, renderCount.get());
+    }
+
+    @Test
+    public void testEqualContentHasEqualDigest() {
+        FractalData.Builder builder = new FractalData.Builder().setSource(SOURCE);
+        builder.addParameter("maxdepth", 50);
+
+        FractalData data = builder.commit();
+
+        Assert.assertEquals(data.digest(), data.copySetParameter("maxdepth", 50.0).digest());
+        Assert.assertNotEquals(data.digest(), data.copySetParameter("maxdepth", 51).digest());
+        Assert.assertNotEquals(data.digest(), new FractalData.Builder().setSource(SOURCE).commit().digest());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        IconGenerator smallCacheGenerator = new IconGenerator((fractal, width, height) -> new int[width * height], 16, 100, 2);
+
+        FractalData data = new FractalData.Builder().setSource(SOURCE).commit();
+
+        for(int i = 0; i < 5; ++i) {
+            smallCacheGenerator.icon(data.copySetParameter("maxdepth", i));
+        }
+
+        Assert.assertEquals(2, smallCacheGenerator.cacheSize());
+    }
+
+    @Test
+    public void testFailuresAreReported() throws InterruptedException {
+        RuntimeException error = new RuntimeException("cannot render");
+
+        IconGenerator failingGenerator = new IconGenerator((fractal, width, height) -> {
+            if(((Number) fractal.data().getValue("maxdepth")).intValue() == 50) {
+                throw error;
+            }
+
+            return new int[width * height];
+        }, 16, 100);
+
+        FractalData.Builder builder = new FractalData.Builder().setSource(SOURCE);
+        builder.addParameter("maxdepth", 50);
+
+        FavoriteEntry.Collection collection = new FavoriteEntry.Collection();
+
+        collection.put("a", new FavoriteEntry(null, new FractalData.Builder().setSource(SOURCE).commit(), null));
+        collection.put("b", new FavoriteEntry(null, builder.commit(), null));
+
+        IconGenerator.Result result = failingGenerator.updateIcons(collection, false);
+
+        Assert.assertNotNull(result.collection.get("a").icon);
+        Assert.assertSame(collection.get("b"), result.collection.get("b"));
+        Assert.assertEquals(1, result.failures.size());
+        Assert.assertSame(error, result.failures.get("b"));
+    }
+}
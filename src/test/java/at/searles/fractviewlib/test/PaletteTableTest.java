@@ -0,0 +1,102 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.commons.color.Palette;
+import at.searles.fractviewlib.color.LabColors;
+import at.searles.fractviewlib.color.PaletteBuffer;
+import at.searles.fractviewlib.color.PaletteTable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class PaletteTableTest {
+
+    private static final Palette PALETTE = new Palette(3, 2, new int[]{
+            0xff000000, 0xffff0000, 0xff00ff00,
+            0xff0000ff, 0xffffffff, 0xff808080
+    });
+
+    @Test
+    public void testLabRoundTrip() {
+        float[] lab = new float[4];
+
+        for(int argb : new int[]{0xff000000, 0xffffffff, 0xff123456, 0x80ff8000, 0xff0000ff}) {
+            LabColors.int2lab(argb, lab, 0);
+            Assert.assertEquals(argb, LabColors.lab2int(lab, 0));
+        }
+    }
+
+    @Test
+    public void testTableContainsControlPoints() {
+        PaletteTable table = PaletteTable.get(PALETTE, 300, 2);
+
+        float[] expected = new float[4];
+        float[] actual = new float[4];
+
+        for(int y = 0; y < PALETTE.height(); ++y) {
+            for(int x = 0; x < PALETTE.width(); ++x) {
+                LabColors.int2lab(PALETTE.argb(x, y), expected, 0);
+                table.lookup(x, y, actual, 0);
+
+                for(int k = 0; k < 4; ++k) {
+                    Assert.assertEquals(expected[k], actual[k], 1e-3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLookupIsPeriodic() {
+        PaletteTable table = PaletteTable.get(PALETTE, 300, 2);
+
+        float[] a = new float[4];
+        float[] b = new float[4];
+
+        table.lookup(0.7, 0.3, a, 0);
+        table.lookup(0.7 + 3, 0.3 - 2, b, 0);
+
+        for(int k = 0; k < 4; ++k) {
+            Assert.assertEquals(a[k], b[k], 1e-3);
+        }
+    }
+
+    @Test
+    public void testEqualPalettesShareTables() {
+        Palette copy = new Palette(3, 2, new int[]{
+                0xff000000, 0xffff0000, 0xff00ff00,
+                0xff0000ff, 0xffffffff, 0xff808080
+        });
+
+        Assert.assertSame(PaletteTable.get(PALETTE), PaletteTable.get(copy));
+    }
+
+    @Test
+    public void testPackedBuffer() {
+        Palette single = new Palette(1, 1, new int[]{0xffff0000});
+
+        PaletteBuffer buffer = PaletteBuffer.get(Arrays.asList(PALETTE, single), 64);
+
+        Assert.assertEquals(2, buffer.size());
+        Assert.assertEquals(0, buffer.offset(0));
+        Assert.assertEquals(64 * 2 * 4, buffer.offset(1));
+        Assert.assertEquals(1, buffer.rows(1));
+        Assert.assertEquals(buffer.offset(1) + 64 * 4, buffer.data().capacity());
+        Assert.assertTrue(buffer.data().isReadOnly());
+
+        float[] red = new float[4];
+        LabColors.int2lab(0xffff0000, red, 0);
+
+        Assert.assertEquals(red[0], buffer.data().get(buffer.offset(1)), 1e-3);
+    }
+
+    @Test
+    public void testEqualPaletteListsShareBuffers() {
+        Palette copy = new Palette(3, 2, new int[]{
+                0xff000000, 0xffff0000, 0xff00ff00,
+                0xff0000ff, 0xffffffff, 0xff808080
+        });
+
+        Assert.assertSame(PaletteBuffer.get(Arrays.asList(PALETTE, PALETTE), 64),
+                PaletteBuffer.get(Arrays.asList(copy, PALETTE), 64));
+    }
+}
@@ -2,9 +2,13 @@ package at.searles.fractviewlib.test;
 
 import at.searles.fractviewlib.Fractal;
 import at.searles.fractviewlib.data.FractalData;
+import at.searles.commons.color.Palette;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+
 public class PaletteTest {
     @Test
     public void paletteInlineTest() {
@@ -20,4 +24,65 @@ public class PaletteTest {
 
         Assert.assertNotNull(code);
     }
+
+    @Test
+    public void paletteChangeWithoutRecompileTest() {
+        String source = "extern lakepalette palette = [[#000, #fff]];" +
+                "var x = lakepalette (1:1)";
+
+        Fractal f = Fractal.fromData(new FractalData.Builder().setSource(source).commit());
+
+        int[] code = f.code();
+        List<Palette> oldPalettes = f.palettes();
+        Palette oldPalette = oldPalettes.get(0);
+        Palette palette = new Palette(1, 1, new int[]{0xff00ff00});
+
+        Assert.assertTrue(f.setValue("lakepalette", palette));
+
+        Assert.assertSame(code, f.code());
+        Assert.assertSame(palette, f.palettes().get(0));
+
+        // copy on write
+        Assert.assertNotSame(oldPalettes, f.palettes());
+        Assert.assertSame(oldPalette, oldPalettes.get(0));
+        Assert.assertFalse(f.getParameter("lakepalette").isDefault);
+
+        f.setValue("lakepalette", null);
+
+        Assert.assertSame(code, f.code());
+        Assert.assertTrue(f.getParameter("lakepalette").isDefault);
+        Assert.assertNotSame(palette, f.palettes().get(0));
+    }
+
+    @Test
+    public void paletteChangeEventTest() {
+        String source = "extern lakepalette palette = [[#000, #fff]];" +
+                "var x = lakepalette (1:1)";
+
+        Fractal f = Fractal.fromData(new FractalData.Builder().setSource(source).commit());
+
+        Fractal.Change[] lastChange = new Fractal.Change[1];
+
+        f.addListener(new Fractal.Listener() {
+            @Override
+            public void fractalModified(Fractal fractal) {
+                Assert.fail("should not be called");
+            }
+
+            @Override
+            public void fractalModified(Fractal fractal, Fractal.Change change) {
+                lastChange[0] = change;
+            }
+        });
+
+        Palette palette = new Palette(1, 1, new int[]{0xff00ff00});
+
+        f.setValue("lakepalette", palette);
+
+        Assert.assertTrue(lastChange[0].palettesChanged);
+        Assert.assertFalse(lastChange[0].codeChanged);
+        Assert.assertFalse(lastChange[0].scaleChanged);
+        Assert.assertEquals(Collections.singleton("lakepalette"), lastChange[0].changedKeys());
+        Assert.assertSame(palette, lastChange[0].newValues.get("lakepalette"));
+    }
 }
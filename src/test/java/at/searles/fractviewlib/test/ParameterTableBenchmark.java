@@ -0,0 +1,32 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.FractalCollection;
+import at.searles.fractviewlib.ParameterTable;
+import at.searles.fractviewlib.data.FractalData;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Measures ParameterTable.create for a large collection. Not part of the
+ * unit tests, run main manually.
+ */
+public class ParameterTableBenchmark {
+    public static void main(String[] args) {
+        int fractalCount = 50, externCount = 100;
+
+        FractalCollection collection = new FractalCollection();
+
+        for(FractalData data : ParameterTableTest.createOverlappingFractals(fractalCount, externCount)) {
+            collection.add(Fractal.fromData(data));
+        }
+
+        long t0 = System.nanoTime();
+        ParameterTable.create(0, collection, new TreeSet<>(Arrays.asList("p0", "p1")));
+        long t1 = System.nanoTime();
+
+        System.out.printf("ParameterTable for %d fractals with %d externs: %d ms%n",
+                fractalCount, externCount, (t1 - t0) / 1000000);
+    }
+}
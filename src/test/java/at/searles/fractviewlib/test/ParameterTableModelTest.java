@@ -0,0 +1,88 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.FractalProvider;
+import at.searles.fractviewlib.ParameterTable;
+import at.searles.fractviewlib.ParameterTableModel;
+import at.searles.fractviewlib.data.FractalData;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParameterTableModelTest {
+
+    private FractalProvider provider;
+    private int id0;
+    private ParameterTableModel model;
+    private List<ParameterTable.Entry> mirror;
+    private List<ParameterTableModel.Change> lastChanges;
+
+    @Before
+    public void setUp() {
+        provider = new FractalProvider();
+        id0 = provider.addFractal(new FractalData.Builder().setSource("extern a int = 0; extern b int = 1; var c = a + b;").commit());
+
+        model = new ParameterTableModel(provider, id0);
+
+        // a mirror of the table that is only updated by the changes.
+        mirror = new ArrayList<>(model.entries());
+
+        model.addListener((src, changes) -> {
+            lastChanges = changes;
+
+            for(ParameterTableModel.Change change : changes) {
+                switch(change.type) {
+                    case Remove:
+                        mirror.remove(change.index);
+                        break;
+                    case Insert:
+                        mirror.add(change.index, change.entry);
+                        break;
+                    case Move:
+                        mirror.add(change.toIndex, mirror.remove(change.index));
+                        break;
+                    case Update:
+                        Assert.assertEquals(change.entry, mirror.get(change.index));
+                        break;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testValueChangeIsUpdate() {
+        provider.setParameterValue("a", id0, 5);
+
+        Assert.assertEquals(1, lastChanges.size());
+        Assert.assertEquals(ParameterTableModel.Change.Type.Update, lastChanges.get(0).type);
+        Assert.assertEquals("a", lastChanges.get(0).entry.key);
+        Assert.assertEquals(model.entries(), mirror);
+    }
+
+    @Test
+    public void testExclusiveParameterInsertsEntries() {
+        int id = provider.addFractal(new FractalData.Builder().setSource("extern b int = 1; extern d int = 2; var c = b + d;").commit());
+
+        Assert.assertEquals(model.entries(), mirror);
+
+        provider.addExclusiveParameter("b");
+
+        Assert.assertEquals(model.entries(), mirror);
+        Assert.assertTrue(lastChanges.stream().anyMatch(
+                change -> change.type == ParameterTableModel.Change.Type.Insert && change.entry.key.equals("b")));
+
+        provider.removeFractal(id);
+
+        Assert.assertEquals(model.entries(), mirror);
+    }
+
+    @Test
+    public void testSourceChange() {
+        provider.setParameterValue("Source", id0, "extern b int = 1; extern e int = 2; var c = e + b;");
+
+        Assert.assertEquals(model.entries(), mirror);
+        Assert.assertEquals(provider.createTable(id0).size(), mirror.size());
+    }
+}
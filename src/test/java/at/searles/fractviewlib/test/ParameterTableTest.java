@@ -78,4 +78,74 @@ public class ParameterTableTest {
 
         Assert.assertEquals("SourceScaleabbcd", s.toString());
     }
+
+    @Test
+    public void testOrderOfOverlappingExterns() {
+        withFractals(
+                new FractalData.Builder()
+                        .setSource("extern a int = 0; extern b int = 0; extern c int = 0; var x = a + b + c;").commit(),
+                new FractalData.Builder()
+                        .setSource("extern b int = 0; extern d int = 0; extern c int = 0; extern e int = 0; var x = b + d + c + e;").commit(),
+                new FractalData.Builder()
+                        .setSource("extern f int = 0; extern a int = 0; extern e int = 0; var x = f + a + e;").commit()
+        );
+
+        withExclusiveParameters("a", "c");
+
+        StringBuilder s = new StringBuilder();
+
+        for(ParameterTable.Entry entry : table) {
+            s.append(entry.key).append(':').append(entry.id).append(' ');
+        }
+
+        // d is inserted before c and f before a. Exclusive
+        // parameters are listed once per fractal that uses them.
+        String expected = String.format("Source:%1$d Scale:%1$d f:%3$d a:%1$d a:%3$d b:%1$d d:%2$d c:%1$d c:%2$d e:%2$d ",
+                ids.get(0), ids.get(1), ids.get(2));
+
+        Assert.assertEquals(expected, s.toString());
+    }
+
+    /**
+     * Creates fractals with overlapping ranges of externs so that the orders must be merged.
+     */
+    static FractalData[] createOverlappingFractals(int fractalCount, int externCount) {
+        FractalData[] dataFields = new FractalData[fractalCount];
+
+        for(int f = 0; f < fractalCount; ++f) {
+            StringBuilder source = new StringBuilder();
+            StringBuilder sum = new StringBuilder("0");
+
+            for(int i = 0; i < externCount; ++i) {
+                String id = "p" + (f * 3 + i) % (2 * externCount);
+                source.append("extern ").append(id).append(" int = ").append(i).append("; ");
+                sum.append(" + ").append(id);
+            }
+
+            source.append("var x = ").append(sum).append(";");
+
+            dataFields[f] = new FractalData.Builder().setSource(source.toString()).commit();
+        }
+
+        return dataFields;
+    }
+
+    @Test
+    public void testOverlappingExterns() {
+        int fractalCount = 20, externCount = 30;
+
+        withFractals(createOverlappingFractals(fractalCount, externCount));
+        withExclusiveParameters("p0", "p1");
+
+        Set<String> keys = new HashSet<>();
+
+        for(ParameterTable.Entry entry : table) {
+            keys.add(entry.key);
+        }
+
+        // every parameter is shown and only exclusive ones more than once.
+        Assert.assertEquals(2 + Math.min(2 * externCount, 3 * (fractalCount - 1) + externCount), keys.size());
+        Assert.assertEquals("Source", table.get(0).key);
+        Assert.assertEquals("Scale", table.get(1).key);
+    }
 }
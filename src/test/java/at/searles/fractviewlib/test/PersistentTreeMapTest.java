@@ -0,0 +1,94 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.data.PersistentTreeMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class PersistentTreeMapTest {
+
+    private static void assertSameContent(TreeMap<String, Integer> expected, PersistentTreeMap<String, Integer> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+
+        Iterator<Map.Entry<String, Integer>> it = actual.iterator();
+
+        for(Map.Entry<String, Integer> entry : expected.entrySet()) {
+            Assert.assertTrue(it.hasNext());
+            Map.Entry<String, Integer> actualEntry = it.next();
+            Assert.assertEquals(entry.getKey(), actualEntry.getKey());
+            Assert.assertEquals(entry.getValue(), actualEntry.getValue());
+            Assert.assertEquals(entry.getValue(), actual.get(entry.getKey()));
+        }
+
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random rnd = new Random(42);
+
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        PersistentTreeMap<String, Integer> actual = PersistentTreeMap.empty();
+
+        for(int i = 0; i < 5000; ++i) {
+            String key = "k" + rnd.nextInt(200);
+
+            if(rnd.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.remove(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.put(key, i);
+            }
+
+            Assert.assertEquals(expected.containsKey(key), actual.containsKey(key));
+        }
+
+        assertSameContent(expected, actual);
+    }
+
+    @Test
+    public void testOldVersionsAreUnchanged() {
+        List<TreeMap<String, Integer>> expected = new ArrayList<>();
+        List<PersistentTreeMap<String, Integer>> versions = new ArrayList<>();
+
+        TreeMap<String, Integer> map = new TreeMap<>();
+        PersistentTreeMap<String, Integer> version = PersistentTreeMap.empty();
+
+        for(int i = 0; i < 100; ++i) {
+            String key = "k" + (i * 7) % 30;
+
+            if(i % 5 == 4) {
+                map.remove(key);
+                version = version.remove(key);
+            } else {
+                map.put(key, i);
+                version = version.put(key, i);
+            }
+
+            expected.add(new TreeMap<>(map));
+            versions.add(version);
+        }
+
+        for(int i = 0; i < expected.size(); ++i) {
+            assertSameContent(expected.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void testUnmodifiedMapIsReturned() {
+        Integer one = 1;
+        PersistentTreeMap<String, Integer> map = PersistentTreeMap.<String, Integer>empty().put("a", one).put("b", 2);
+
+        Assert.assertSame(map, map.put("a", one));
+        Assert.assertSame(map, map.remove("c"));
+        Assert.assertTrue(map.isSameTree(map.put("a", one)));
+        Assert.assertFalse(map.isSameTree(map.put("a", 3)));
+    }
+}
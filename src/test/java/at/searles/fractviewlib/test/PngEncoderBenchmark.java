@@ -0,0 +1,32 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.io.PngEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compares PngEncoder to ImageIO. Not part of the unit tests, run main manually.
+ */
+public class PngEncoderBenchmark {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int width = 1024, height = 1024;
+        int[] argb = PngEncoderTest.createImage(width, height);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, argb, 0, width);
+
+        long t0 = System.nanoTime();
+        ImageIO.write(image, "png", new ByteArrayOutputStream());
+        long t1 = System.nanoTime();
+        PngEncoder.encode(argb, width, height, true);
+        long t2 = System.nanoTime();
+        PngEncoderTest.encodeParallel(argb, width, height, Runtime.getRuntime().availableProcessors());
+        long t3 = System.nanoTime();
+
+        System.out.printf("ImageIO: %d ms, PngEncoder: %d ms, PngEncoder (parallel): %d ms%n",
+                (t1 - t0) / 1000000, (t2 - t1) / 1000000, (t3 - t2) / 1000000);
+    }
+}
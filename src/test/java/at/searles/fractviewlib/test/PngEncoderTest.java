@@ -0,0 +1,76 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.io.PngEncoder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+public class PngEncoderTest {
+
+    static int[] createImage(int width, int height) {
+        int[] argb = new int[width * height];
+
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                double d = Math.sin(x * 0.05) * Math.cos(y * 0.03);
+                int c = (int) (127.5 + 127.5 * d);
+                argb[y * width + x] = 0xff000000 | c << 16 | (x & 0xff) << 8 | (c ^ y) & 0xff;
+            }
+        }
+
+        return argb;
+    }
+
+    static byte[] encodeParallel(int[] argb, int width, int height, int parallelism) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new PngEncoder(width, height, true).encode(
+                (y, row) -> System.arraycopy(argb, y * width, row, 0, width),
+                Channels.newChannel(out),
+                parallelism);
+
+        return out.toByteArray();
+    }
+
+    private static void assertImage(int[] argb, int width, int height, byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+
+        Assert.assertEquals(width, image.getWidth());
+        Assert.assertEquals(height, image.getHeight());
+
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                Assert.assertEquals(argb[y * width + x], image.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelEncoding() throws IOException, InterruptedException {
+        // height is not a multiple of the strip height.
+        int width = 123, height = 3 * PngEncoder.DEFAULT_STRIP_HEIGHT + 17;
+        int[] argb = createImage(width, height);
+
+        assertImage(argb, width, height, encodeParallel(argb, width, height, 3));
+    }
+
+    @Test
+    public void testSingleStrip() throws IOException, InterruptedException {
+        int[] argb = createImage(5, 3);
+
+        assertImage(argb, 5, 3, encodeParallel(argb, 5, 3, 2));
+    }
+
+    @Test
+    public void testIconEncoding() throws IOException {
+        int[] argb = createImage(64, 64);
+
+        assertImage(argb, 64, 64, PngEncoder.encode(argb, 64, 64, true));
+    }
+}
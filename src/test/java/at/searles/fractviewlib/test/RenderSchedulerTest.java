@@ -0,0 +1,199 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.FractalProvider;
+import at.searles.fractviewlib.data.FractalData;
+import at.searles.fractviewlib.render.RenderScheduler;
+import at.searles.fractviewlib.render.RenderStats;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+public class RenderSchedulerTest {
+
+    private final FractalProvider provider = new FractalProvider();
+    private RenderScheduler scheduler;
+
+    private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    private Runnable record(String name) {
+        return () -> order.add(name);
+    }
+
+    /**
+     * Keeps the only thread busy until release is counted down.
+     */
+    private Future<?> block(int id) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+
+        Future<?> future = scheduler.submit(id, () -> {
+            started.countDown();
+
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                order.add("interrupted");
+            }
+        }, true);
+
+        started.await();
+        return future;
+    }
+
+    private static void waitFor(List<Future<?>> futures) throws Exception {
+        for(Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Test
+    public void testSelectedFractalIsRenderedFirst() throws Exception {
+        scheduler = new RenderScheduler(provider, 1, 1);
+
+        block(2);
+
+        List<Future<?>> futures = Arrays.asList(
+                scheduler.submit(3, record("3"), true),
+                scheduler.submit(1, record("1 hidden"), false),
+                scheduler.submit(1, record("1 visible"), true)
+        );
+
+        release.countDown();
+        waitFor(futures);
+
+        Assert.assertEquals(Arrays.asList("1 visible", "1 hidden", "3"), order);
+    }
+
+    @Test
+    public void testExpensiveFractalDoesNotStarveOthers() throws Exception {
+        scheduler = new RenderScheduler(provider, 0, 1, 1);
+
+        block(9);
+
+        List<Future<?>> futures = new ArrayList<>();
+
+        for(int i = 0; i < 5; ++i) {
+            futures.add(scheduler.submit(1, () -> {
+                order.add("1");
+
+                try {
+                    Thread.sleep(5);
+                } catch(InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, true));
+        }
+
+        for(int i = 0; i < 5; ++i) {
+            futures.add(scheduler.submit(2, record("2"), true));
+        }
+
+        release.countDown();
+        waitFor(futures);
+
+        // the slice of 1 is used up after its first tile.
+        Assert.assertEquals("1", order.get(0));
+        Assert.assertEquals("2", order.get(1));
+    }
+
+    @Test
+    public void testCancelStopsPendingAndRunningTiles() throws Exception {
+        scheduler = new RenderScheduler(provider, 1, 1);
+
+        Future<?> running = block(1);
+        Future<?> pending = scheduler.submit(1, record("pending"), true);
+
+        scheduler.cancel(1);
+
+        Assert.assertTrue(running.isCancelled());
+        Assert.assertTrue(pending.isCancelled());
+
+        // the thread is available again.
+        scheduler.submit(1, record("next"), true).get();
+
+        Assert.assertEquals(Arrays.asList("interrupted", "next"), order);
+    }
+
+    @Test
+    public void testCancelledTileIsNotChargedToNewTiles() throws Exception {
+        scheduler = new RenderScheduler(provider, 0, 1, 50);
+
+        CountDownLatch started = new CountDownLatch(1);
+
+        // ignores the interrupt and uses up more than a slice.
+        scheduler.submit(1, () -> {
+            started.countDown();
+            long end = System.nanoTime() + 100_000_000L;
+
+            while(System.nanoTime() < end) {
+                Thread.yield();
+            }
+        }, true);
+
+        started.await();
+        scheduler.cancel(1);
+
+        List<Future<?>> futures = Arrays.asList(
+                scheduler.submit(1, record("1"), true),
+                scheduler.submit(2, record("2"), true)
+        );
+
+        waitFor(futures);
+
+        Assert.assertEquals(Arrays.asList("1", "2"), order);
+    }
+
+    @Test
+    public void testStatsAreReportedWhenAllTilesAreDone() throws Exception {
+        scheduler = new RenderScheduler(provider, 1, 2);
+
+        List<RenderStats> stats = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(1);
+
+        scheduler.setStatsListener((id, tileStats) -> {
+            order.add("finished " + id);
+            stats.add(tileStats);
+            finished.countDown();
+        });
+
+        block(1);
+
+        for(int i = 0; i < 3; ++i) {
+            scheduler.submit(1, record("tile"), true, 100);
+        }
+
+        release.countDown();
+        finished.await();
+
+        Assert.assertEquals("finished 1", order.get(order.size() - 1));
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals(4, stats.get(0).jobNanos.length);
+        Assert.assertEquals(300, stats.get(0).pixels);
+    }
+
+    @Test
+    public void testRemovedFractalIsCancelled() throws Exception {
+        int id0 = provider.addFractal(new FractalData.Builder().setSource("var x = 0;").commit());
+        int id1 = provider.addFractal(new FractalData.Builder().setSource("var x = 1;").commit());
+
+        scheduler = new RenderScheduler(provider, id0, 1);
+
+        Future<?> running = block(id1);
+
+        provider.removeFractal(id1);
+
+        Assert.assertTrue(running.isCancelled());
+        Assert.assertTrue(scheduler.submit(id1, record("removed"), true).isCancelled());
+
+        scheduler.submit(id0, record("kept"), true).get();
+    }
+}
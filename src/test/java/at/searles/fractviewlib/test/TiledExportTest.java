@@ -0,0 +1,84 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.fractviewlib.io.PngEncoder;
+import at.searles.fractviewlib.io.TiledExport;
+import at.searles.fractviewlib.render.RenderStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TiledExportTest {
+
+    private static int color(int x, int y) {
+        return 0xff000000 | (x * 7 & 0xff) << 16 | (y * 3 & 0xff) << 8 | ((x ^ y) & 0xff);
+    }
+
+    @Test
+    public void testExportIsReadable() throws IOException, InterruptedException {
+        int width = 301, height = 203;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicLong lastProgress = new AtomicLong();
+
+        new TiledExport(width, height, 64).export((x0, y0, w, h, argb) -> {
+            for(int y = 0; y < h; ++y) {
+                for(int x = 0; x < w; ++x) {
+                    argb[y * w + x] = color(x0 + x, y0 + y);
+                }
+            }
+        }, Channels.newChannel(out), 4, (done, total) -> {
+            if(done == total) {
+                lastProgress.set(total);
+            }
+        });
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        Assert.assertEquals(width, image.getWidth());
+        Assert.assertEquals(height, image.getHeight());
+
+        for(int y = 0; y < height; ++y) {
+            for(int x = 0; x < width; ++x) {
+                Assert.assertEquals(color(x, y), image.getRGB(x, y));
+            }
+        }
+
+        Assert.assertEquals(5L * 4L + height, lastProgress.get());
+    }
+
+    @Test
+    public void testStatsCoverAllTiles() throws IOException, InterruptedException {
+        AtomicReference<RenderStats> stats = new AtomicReference<>();
+
+        new TiledExport(100, 70, 32).export((x0, y0, w, h, argb) -> {},
+                Channels.newChannel(new ByteArrayOutputStream()), 2, (done, total) -> {}, stats::set);
+
+        Assert.assertEquals(4 * 3, stats.get().jobNanos.length);
+        Assert.assertEquals(100 * 70, stats.get().pixels);
+        Assert.assertEquals(2, stats.get().parallelism);
+        Assert.assertTrue(stats.get().busyNanos <= 2 * stats.get().wallNanos);
+    }
+
+    @Test
+    public void testTransparentPng() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new PngEncoder(2, 1, true).encode((y, argb) -> {
+            argb[0] = 0x80ff0000;
+            argb[1] = 0x00000000;
+        }, Channels.newChannel(out));
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+        Assert.assertEquals(0x80ff0000, image.getRGB(0, 0));
+        Assert.assertEquals(0, image.getRGB(1, 0) >>> 24);
+    }
+}
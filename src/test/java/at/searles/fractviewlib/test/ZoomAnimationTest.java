@@ -0,0 +1,80 @@
+package at.searles.fractviewlib.test;
+
+import at.searles.commons.math.Scale;
+import at.searles.fractviewlib.Fractal;
+import at.searles.fractviewlib.animation.ZoomAnimation;
+import at.searles.fractviewlib.data.FractalData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ZoomAnimationTest {
+
+    private static void assertScaleEquals(Scale expected, Scale actual) {
+        Assert.assertEquals(expected.xx, actual.xx, 1e-9);
+        Assert.assertEquals(expected.xy, actual.xy, 1e-9);
+        Assert.assertEquals(expected.yx, actual.yx, 1e-9);
+        Assert.assertEquals(expected.yy, actual.yy, 1e-9);
+        Assert.assertEquals(expected.cx, actual.cx, 1e-9);
+        Assert.assertEquals(expected.cy, actual.cy, 1e-9);
+    }
+
+    @Test
+    public void testEndpoints() {
+        Scale a = new Scale(2, 0, 0, 2, 0, 0);
+        Scale b = new Scale(0, 0.001, -0.001, 0, -0.75, 0.1);
+
+        assertScaleEquals(a, ZoomAnimation.interpolate(a, b, 0));
+        assertScaleEquals(b, ZoomAnimation.interpolate(a, b, 1));
+    }
+
+    @Test
+    public void testZoomIsGeometric() {
+        Scale a = new Scale(1, 0, 0, 1, 0, 0);
+        Scale b = new Scale(0.01, 0, 0, 0.01, 0, 0);
+
+        Scale middle = ZoomAnimation.interpolate(a, b, 0.5);
+
+        Assert.assertEquals(0.1, middle.xx, 1e-12);
+        Assert.assertEquals(0.1, middle.yy, 1e-12);
+    }
+
+    @Test
+    public void testZoomFixpointStaysInPlace() {
+        // zoom into point p = (1, 1) by factor 100
+        double px = 1, py = 1;
+        Scale a = new Scale(2, 0, 0, 2, 0, 0);
+        Scale b = new Scale(0.02, 0, 0, 0.02, px - (px - 0) * 0.01, py - (py - 0) * 0.01);
+
+        for(double t = 0; t <= 1; t += 0.125) {
+            Scale s = ZoomAnimation.interpolate(a, b, t);
+
+            // screen coordinate of p must be constant.
+            double screenX = (px - s.cx) / s.xx;
+            Assert.assertEquals(0.5, screenX, 1e-9);
+        }
+    }
+
+    @Test
+    public void testFramesAreDeliveredInOrder() throws Exception {
+        FractalData start = new FractalData.Builder().setSource("var x = 0;").commit();
+        FractalData end = start.copySetParameter(Fractal.SCALE_LABEL, new Scale(0.001, 0, 0, 0.001, 0.3, 0.2));
+
+        ZoomAnimation animation = new ZoomAnimation(Arrays.asList(start, end), 10);
+
+        Assert.assertEquals(11, animation.frameCount());
+
+        List<Integer> delivered = new ArrayList<>();
+
+        animation.render((fractal, width, height) -> fractal.data(), (index, frame) -> {
+            Assert.assertEquals(animation.frame(index), frame);
+            delivered.add(index);
+        }, 16, 16, 4);
+
+        Assert.assertEquals(11, delivered.size());
+        Assert.assertEquals(10, (int) delivered.get(10));
+    }
+}